@@ -0,0 +1,69 @@
+package bq_standard;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.IdentityHashMap;
+
+/**
+ * Resolves an entity target ID once and remembers which concrete entity classes match it (exactly or as a sub-type).
+ * Registered names depend only on the class so every check after the first for a given class is a single map lookup.
+ */
+public class EntityClassMatcher
+{
+    public final String idName;
+    public final boolean subtypes;
+
+    @Nullable
+    private final Class<?> target;
+    private final IdentityHashMap<Class<?>, Boolean> results = new IdentityHashMap<>();
+
+    public EntityClassMatcher(@Nonnull String idName, boolean subtypes)
+    {
+        this.idName = idName;
+        this.subtypes = subtypes;
+        this.target = (Class<?>)EntityList.stringToClassMapping.get(idName);
+    }
+
+    /**
+     * Whether this matcher still reflects the given settings. Used to catch tasks edited in place
+     */
+    public boolean isFor(String idName, boolean subtypes)
+    {
+        return this.subtypes == subtypes && this.idName.equals(idName);
+    }
+
+    public boolean matches(@Nonnull Entity entity)
+    {
+        return matches(entity.getClass());
+    }
+
+    public boolean matches(@Nonnull Class<?> subject)
+    {
+        if(target == null) return false; // No idea what we're looking for
+
+        Boolean result = results.get(subject);
+
+        if(result == null)
+        {
+            String subjectID = (String)EntityList.classToStringMapping.get(subject);
+
+            if(subjectID == null)
+            {
+                result = false; // This isn't a registered entity!
+            } else if(subtypes)
+            {
+                result = target.isAssignableFrom(subject);
+            } else
+            {
+                result = subjectID.equals(idName);
+            }
+
+            results.put(subject, result);
+        }
+
+        return result;
+    }
+}
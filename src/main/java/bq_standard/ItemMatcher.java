@@ -0,0 +1,189 @@
+package bq_standard;
+
+import betterquesting.api.utils.BigItemStack;
+import betterquesting.api.utils.ItemComparison;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraftforge.oredict.OreDictionary;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * A list of required items compiled for matching many stacks against. Requirements are grouped by item so a stack only
+ * visits the ones for its own item, damage is checked against a precomputed mask (any value for damageable items and
+ * wildcards) and ore dictionary entries are resolved to ore IDs up front. NBT is only compared once one of those cheap
+ * checks has passed. Follows the same rules as ItemComparison.StackMatch and OreDictionaryMatch.
+ */
+public class ItemMatcher
+{
+    private static final int[] NONE = new int[0];
+
+    private final BigItemStack[] source;
+    private final boolean ignoreNBT;
+    private final boolean partialMatch;
+
+    private final IdentityHashMap<Item, Requirement[]> itemMap = new IdentityHashMap<>();
+    private final HashMap<Integer, BitSet> oreMap = new HashMap<>();
+    private final Requirement[] byIndex;
+
+    private ItemMatcher(BigItemStack[] source, boolean ignoreNBT, boolean partialMatch)
+    {
+        this.source = source;
+        this.ignoreNBT = ignoreNBT;
+        this.partialMatch = partialMatch;
+        this.byIndex = new Requirement[source.length];
+
+        HashMap<Item, List<Requirement>> grouped = new HashMap<>();
+
+        for(int i = 0; i < source.length; i++)
+        {
+            BigItemStack rStack = source[i];
+            ItemStack base = rStack.getBaseStack();
+            int oreID = rStack.hasOreDict() ? OreDictionary.getOreID(rStack.getOreDict()) : -1;
+            Requirement req = new Requirement(i, base, oreID, rStack.GetTagCompound(), ignoreNBT, partialMatch);
+            byIndex[i] = req;
+
+            if(req.item != null) grouped.computeIfAbsent(req.item, (k) -> new ArrayList<>()).add(req);
+            if(oreID >= 0) oreMap.computeIfAbsent(oreID, (k) -> new BitSet()).set(i);
+        }
+
+        grouped.forEach((item, list) -> itemMap.put(item, list.toArray(new Requirement[0])));
+    }
+
+    @Nonnull
+    public static ItemMatcher compile(@Nonnull List<BigItemStack> required, boolean ignoreNBT, boolean partialMatch)
+    {
+        return new ItemMatcher(required.toArray(new BigItemStack[0]), ignoreNBT, partialMatch);
+    }
+
+    /**
+     * Whether this was compiled from exactly these requirements and settings. Tasks can have their lists edited directly
+     * (importers do) so this is checked before use rather than trusting the last readFromNBT
+     */
+    public boolean isCompiledFrom(@Nonnull List<BigItemStack> required, boolean ignoreNBT, boolean partialMatch)
+    {
+        if(this.ignoreNBT != ignoreNBT || this.partialMatch != partialMatch || required.size() != source.length) return false;
+
+        for(int i = 0; i < source.length; i++)
+        {
+            if(required.get(i) != source[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Indices of every requirement the given stack counts towards in ascending order
+     */
+    @Nonnull
+    public int[] getMatches(@Nullable ItemStack stack)
+    {
+        if(stack == null || stack.getItem() == null) return NONE;
+        return getMatches(stack.getItem(), stack.getItemDamage(), stack.stackTagCompound, oreMap.isEmpty() ? NONE : OreDictionary.getOreIDs(stack));
+    }
+
+    /**
+     * Same as getMatches(ItemStack) but reuses the ore IDs the key has already looked up
+     */
+    @Nonnull
+    public int[] getMatches(@Nonnull StackKey key)
+    {
+        return getMatches(key.item, key.damage, key.tags, oreMap.isEmpty() ? NONE : key.getOreIDs());
+    }
+
+    public boolean matches(int index, @Nullable ItemStack stack)
+    {
+        if(stack == null || stack.getItem() == null || index < 0 || index >= byIndex.length) return false;
+
+        Requirement req = byIndex[index];
+        if(req.item == stack.getItem() && req.matchesDamage(stack.getItemDamage())) return req.matchesTags(stack.stackTagCompound);
+        if(req.oreID < 0) return false;
+
+        for(int id : OreDictionary.getOreIDs(stack))
+        {
+            if(id == req.oreID) return req.matchesTags(stack.stackTagCompound);
+        }
+
+        return false;
+    }
+
+    private int[] getMatches(Item item, int damage, @Nullable NBTTagCompound tags, int[] oreIDs)
+    {
+        Requirement[] candidates = itemMap.get(item);
+        BitSet found = null;
+
+        if(candidates != null)
+        {
+            for(Requirement req : candidates)
+            {
+                if(!req.matchesDamage(damage) || !req.matchesTags(tags)) continue;
+                if(found == null) found = new BitSet(byIndex.length);
+                found.set(req.index);
+            }
+        }
+
+        for(int id : oreIDs)
+        {
+            BitSet ores = oreMap.get(id);
+            if(ores == null) continue;
+
+            for(int i = ores.nextSetBit(0); i >= 0; i = ores.nextSetBit(i + 1))
+            {
+                if(found != null && found.get(i)) continue;
+                if(!byIndex[i].matchesTags(tags)) continue;
+                if(found == null) found = new BitSet(byIndex.length);
+                found.set(i);
+            }
+        }
+
+        if(found == null) return NONE;
+
+        int[] matches = new int[found.cardinality()];
+        for(int i = found.nextSetBit(0), n = 0; i >= 0; i = found.nextSetBit(i + 1)) matches[n++] = i;
+        return matches;
+    }
+
+    private static class Requirement
+    {
+        private final int index;
+        private final Item item;
+        private final int damage; // -1 if any damage value is accepted
+        private final int oreID; // -1 if not an ore dictionary entry
+        private final NBTTagCompound tags;
+        private final NBTMatcher partialTags;
+        private final boolean checkTags;
+
+        private Requirement(int index, @Nullable ItemStack base, int oreID, @Nullable NBTTagCompound tags, boolean ignoreNBT, boolean partialMatch)
+        {
+            this.index = index;
+            this.oreID = oreID;
+            this.item = base == null ? null : base.getItem();
+
+            if(base == null || item == null)
+            {
+                this.damage = -1;
+            } else
+            {
+                this.damage = item.isDamageable() || base.getItemDamage() == OreDictionary.WILDCARD_VALUE ? -1 : base.getItemDamage();
+            }
+
+            this.tags = tags;
+            this.checkTags = !ignoreNBT;
+            this.partialTags = checkTags && partialMatch ? NBTMatcher.compile(tags) : null;
+        }
+
+        private boolean matchesDamage(int value)
+        {
+            return damage < 0 || damage == value;
+        }
+
+        private boolean matchesTags(@Nullable NBTTagCompound sample)
+        {
+            if(!checkTags) return true;
+            return partialTags != null ? partialTags.matches(sample) : ItemComparison.CompareNBTTag(tags, sample, false);
+        }
+    }
+}
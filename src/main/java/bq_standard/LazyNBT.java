@@ -0,0 +1,65 @@
+package bq_standard;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
+/**
+ * Serialises an entity or tile entity the first time its NBT is requested and hands the same copy to every other task
+ * looking at the same event. Tasks without an NBT requirement never pay for the serialisation.
+ */
+public class LazyNBT
+{
+    public static final LazyNBT NONE = new LazyNBT(() -> null);
+
+    private final Supplier<NBTTagCompound> source;
+    private boolean captured = false;
+    private NBTTagCompound tags = null;
+
+    private LazyNBT(@Nonnull Supplier<NBTTagCompound> source)
+    {
+        this.source = source;
+    }
+
+    @Nullable
+    public NBTTagCompound get()
+    {
+        if(!captured)
+        {
+            tags = source.get();
+            captured = true;
+        }
+
+        return tags;
+    }
+
+    @Nonnull
+    public static LazyNBT ofEntity(@Nonnull Entity entity)
+    {
+        return new LazyNBT(() -> {
+            NBTTagCompound subjectTags = new NBTTagCompound();
+            entity.writeToNBTOptional(subjectTags);
+            return subjectTags;
+        });
+    }
+
+    @Nonnull
+    public static LazyNBT ofBlock(@Nonnull World world, @Nullable Block block, int meta, int x, int y, int z)
+    {
+        if(block == null || !block.hasTileEntity(meta)) return NONE;
+
+        return new LazyNBT(() -> {
+            TileEntity tile = world.getTileEntity(x, y, z);
+            if(tile == null) return null;
+            NBTTagCompound tileTags = new NBTTagCompound();
+            tile.writeToNBT(tileTags);
+            return tileTags;
+        });
+    }
+}
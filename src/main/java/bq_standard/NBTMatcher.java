@@ -0,0 +1,225 @@
+package bq_standard;
+
+import betterquesting.api.utils.NBTConverter;
+import net.minecraft.nbt.*;
+import net.minecraft.nbt.NBTBase.NBTPrimitive;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partial NBT comparison compiled from a target tag. Nested compounds are flattened into a list of (path, value) checks
+ * so only the keys the target actually constrains are visited and the first mismatch ends the comparison.
+ * Follows the partial matching rules of ItemComparison.CompareNBTTag: extra keys on the sample are ignored, numbers are
+ * compared by value regardless of their type, list and array entries may appear in any order but each sample entry only
+ * satisfies one required entry, and an empty compound or list only matches an empty or missing one. An empty target
+ * matches anything, which is how every caller already treated it.
+ */
+public class NBTMatcher
+{
+    public static final NBTMatcher ANY = new NBTMatcher(new Check[0]);
+
+    private final Check[] checks;
+
+    private NBTMatcher(Check[] checks)
+    {
+        this.checks = checks;
+    }
+
+    @Nonnull
+    public static NBTMatcher compile(@Nullable NBTTagCompound target)
+    {
+        if(target == null || target.hasNoTags()) return ANY;
+
+        List<Check> list = new ArrayList<>();
+        flatten(target, new String[0], list);
+        return new NBTMatcher(list.toArray(new Check[0]));
+    }
+
+    /**
+     * True if any sample will pass, in which case there's no need to produce one
+     */
+    public boolean isEmpty()
+    {
+        return checks.length <= 0;
+    }
+
+    public boolean matches(@Nonnull LazyNBT sample)
+    {
+        return isEmpty() || matches(sample.get());
+    }
+
+    public boolean matches(@Nullable NBTTagCompound sample)
+    {
+        if(isEmpty()) return true;
+        if(sample == null) return false;
+
+        for(Check check : checks)
+        {
+            NBTBase tag = sample;
+
+            for(String key : check.path)
+            {
+                if(!(tag instanceof NBTTagCompound)) return false;
+                tag = ((NBTTagCompound)tag).getTag(key);
+                if(tag == null) return false;
+            }
+
+            if(!check.test(tag)) return false;
+        }
+
+        return true;
+    }
+
+    private static void flatten(NBTTagCompound tag, String[] path, List<Check> list)
+    {
+        for(Object obj : tag.func_150296_c())
+        {
+            String key = (String)obj;
+            NBTBase value = tag.getTag(key);
+
+            String[] subPath = new String[path.length + 1];
+            System.arraycopy(path, 0, subPath, 0, path.length);
+            subPath[path.length] = key;
+
+            if(value instanceof NBTTagCompound && !((NBTTagCompound)value).hasNoTags())
+            {
+                flatten((NBTTagCompound)value, subPath, list);
+            } else
+            {
+                list.add(new Check(subPath, value));
+            }
+        }
+    }
+
+    private static boolean compare(NBTBase required, NBTBase sample)
+    {
+        // Empty compounds and lists only match empty or missing ones, same as CompareNBTTag
+        if(isEmpty(required) != isEmpty(sample))
+        {
+            return false;
+        } else if(isEmpty(required))
+        {
+            return true;
+        } else if(!(required instanceof NBTPrimitive && sample instanceof NBTPrimitive) && required.getId() != sample.getId())
+        {
+            return false;
+        } else if(required instanceof NBTTagCompound)
+        {
+            NBTTagCompound reqTags = (NBTTagCompound)required;
+            NBTTagCompound subTags = (NBTTagCompound)sample;
+
+            for(Object key : reqTags.func_150296_c())
+            {
+                if(!subTags.hasKey((String)key) || !compare(reqTags.getTag((String)key), subTags.getTag((String)key))) return false;
+            }
+
+            return true;
+        } else if(required instanceof NBTTagList)
+        {
+            List<NBTBase> reqList = NBTConverter.getTagList((NBTTagList)required);
+            List<NBTBase> subList = NBTConverter.getTagList((NBTTagList)sample);
+            if(reqList.size() > subList.size()) return false;
+
+            boolean[] used = new boolean[subList.size()];
+
+            topLoop:
+            for(NBTBase reqEntry : reqList)
+            {
+                for(int j = 0; j < subList.size(); j++)
+                {
+                    if(used[j] || !compare(reqEntry, subList.get(j))) continue;
+                    used[j] = true;
+                    continue topLoop;
+                }
+
+                return false;
+            }
+
+            return true;
+        } else if(required instanceof NBTTagIntArray)
+        {
+            int[] reqAry = ((NBTTagIntArray)required).func_150302_c();
+            int[] subAry = ((NBTTagIntArray)sample).func_150302_c();
+            if(reqAry.length > subAry.length) return false;
+
+            boolean[] used = new boolean[subAry.length];
+
+            topLoop:
+            for(int value : reqAry)
+            {
+                for(int j = 0; j < subAry.length; j++)
+                {
+                    if(used[j] || subAry[j] != value) continue;
+                    used[j] = true;
+                    continue topLoop;
+                }
+
+                return false;
+            }
+
+            return true;
+        } else if(required instanceof NBTTagByteArray)
+        {
+            byte[] reqAry = ((NBTTagByteArray)required).func_150292_c();
+            byte[] subAry = ((NBTTagByteArray)sample).func_150292_c();
+            if(reqAry.length > subAry.length) return false;
+
+            boolean[] used = new boolean[subAry.length];
+
+            topLoop:
+            for(byte value : reqAry)
+            {
+                for(int j = 0; j < subAry.length; j++)
+                {
+                    if(used[j] || subAry[j] != value) continue;
+                    used[j] = true;
+                    continue topLoop;
+                }
+
+                return false;
+            }
+
+            return true;
+        } else if(required instanceof NBTPrimitive)
+        {
+            return ((NBTPrimitive)required).func_150286_g() == ((NBTPrimitive)sample).func_150286_g();
+        }
+
+        return required.equals(sample);
+    }
+
+    private static boolean isEmpty(NBTBase tag)
+    {
+        return tag == null || (tag instanceof NBTTagCompound && ((NBTTagCompound)tag).hasNoTags()) || (tag instanceof NBTTagList && ((NBTTagList)tag).tagCount() <= 0);
+    }
+
+    private static class Check
+    {
+        private final String[] path;
+        private final NBTBase value;
+        private final double number;
+
+        private Check(String[] path, NBTBase value)
+        {
+            this.path = path;
+            this.value = value;
+            this.number = value instanceof NBTPrimitive ? ((NBTPrimitive)value).func_150286_g() : 0D;
+        }
+
+        private boolean test(NBTBase sample)
+        {
+            if(value instanceof NBTPrimitive) // Most common case. Skip the type dispatch
+            {
+                return sample instanceof NBTPrimitive && ((NBTPrimitive)sample).func_150286_g() == number;
+            } else if(value instanceof NBTTagString)
+            {
+                return value.equals(sample);
+            }
+
+            return compare(value, sample);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package bq_standard;
+
+import net.minecraft.block.Block;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.oredict.OreDictionary;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * Precompiled block lookup for a list of NbtBlockTypes. Targets are grouped by block and resolved ore ID up front and
+ * each (block, meta) probe is cached so repeated lookups are a single map access. NBT is NOT checked here.
+ */
+public class NbtBlockIndex
+{
+    private static final int[] EMPTY = new int[0];
+
+    private final IdentityHashMap<Block, int[]> blockSlots = new IdentityHashMap<>();
+    private final HashMap<Integer, int[]> oreSlots = new HashMap<>();
+    private final int[] targetMeta;
+
+    private final IdentityHashMap<Block, int[][]> resolved = new IdentityHashMap<>();
+
+    public NbtBlockIndex(@Nonnull List<NbtBlockType> types)
+    {
+        targetMeta = new int[types.size()];
+
+        HashMap<Block, List<Integer>> tmpBlocks = new HashMap<>();
+        HashMap<Integer, List<Integer>> tmpOres = new HashMap<>();
+
+        for(int i = 0; i < types.size(); i++)
+        {
+            NbtBlockType type = types.get(i);
+            if(type == null) continue;
+
+            targetMeta[i] = type.m; // Only a negative meta matches any. Same as the per-event checks this replaced
+            if(type.b != null) tmpBlocks.computeIfAbsent(type.b, (key) -> new ArrayList<>()).add(i);
+            if(type.oreDict != null && type.oreDict.length() > 0) tmpOres.computeIfAbsent(OreDictionary.getOreID(type.oreDict), (key) -> new ArrayList<>()).add(i);
+        }
+
+        tmpBlocks.forEach((key, value) -> blockSlots.put(key, toArray(value)));
+        tmpOres.forEach((key, value) -> oreSlots.put(key, toArray(value)));
+    }
+
+    /**
+     * Returns the indices of all block types matching the given block and meta in ascending order
+     */
+    @Nonnull
+    public int[] getSlots(Block block, int meta)
+    {
+        if(block == null) return EMPTY;
+        if(meta < 0 || meta > 15) return resolve(block, meta); // Not a valid world meta. Don't bother caching it
+
+        int[][] metaSlots = resolved.get(block);
+
+        if(metaSlots == null)
+        {
+            metaSlots = new int[16][];
+            resolved.put(block, metaSlots);
+        }
+
+        int[] slots = metaSlots[meta];
+
+        if(slots == null)
+        {
+            slots = resolve(block, meta);
+            metaSlots[meta] = slots;
+        }
+
+        return slots;
+    }
+
+    private int[] resolve(@Nonnull Block block, int meta)
+    {
+        TreeSet<Integer> found = new TreeSet<>();
+
+        int[] direct = blockSlots.get(block);
+        if(direct != null)
+        {
+            for(int i : direct)
+            {
+                if(targetMeta[i] < 0 || targetMeta[i] == meta) found.add(i);
+            }
+        }
+
+        Item item = oreSlots.size() <= 0 ? null : Item.getItemFromBlock(block);
+        if(item != null && meta >= 0)
+        {
+            for(int id : OreDictionary.getOreIDs(new ItemStack(item, 1, meta)))
+            {
+                int[] ore = oreSlots.get(id);
+                if(ore == null) continue;
+                for(int i : ore) found.add(i);
+            }
+        }
+
+        if(found.size() <= 0) return EMPTY;
+
+        int[] slots = new int[found.size()];
+        int n = 0;
+        for(int i : found) slots[n++] = i;
+        return slots;
+    }
+
+    private static int[] toArray(List<Integer> list)
+    {
+        int[] ary = new int[list.size()];
+        for(int i = 0; i < ary.length; i++) ary[i] = list.get(i);
+        return ary;
+    }
+}
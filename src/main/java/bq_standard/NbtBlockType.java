@@ -17,6 +17,9 @@ public class NbtBlockType // TODO: Make a version of this for the base mod and g
     public String oreDict = "";
     public NBTTagCompound tags = new NBTTagCompound();
     
+    private NBTMatcher tagMatcher = null;
+    private NBTTagCompound matcherTags = null;
+    
     public NbtBlockType()
     {
     }
@@ -54,6 +57,21 @@ public class NbtBlockType // TODO: Make a version of this for the base mod and g
         tags = json.getCompoundTag("nbt");
         n = json.getInteger("amount");
         oreDict = json.getString("oreDict");
+        tagMatcher = null;
+    }
+    
+    /**
+     * Compiled form of the target tags. Recompiled if the tags have been swapped out since
+     */
+    public NBTMatcher getTagMatcher()
+    {
+        if(tagMatcher == null || matcherTags != tags)
+        {
+            tagMatcher = NBTMatcher.compile(tags);
+            matcherTags = tags;
+        }
+        
+        return tagMatcher;
     }
     
     @Nullable
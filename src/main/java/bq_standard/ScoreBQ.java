@@ -1,62 +1,70 @@
 package bq_standard;
 
 import betterquesting.api2.storage.INBTPartial;
+import bq_standard.tasks.IntProgressStore;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 import java.util.UUID;
 
 public class ScoreBQ implements INBTPartial<NBTTagList, UUID>
 {
-	private final TreeMap<UUID, Integer> playerScores = new TreeMap<>();
+	private final IntProgressStore playerScores = new IntProgressStore(); // Keyed by UUIDRegistry index
 	
 	public synchronized int getScore(@Nonnull UUID uuid)
 	{
-		Integer value = playerScores.get(uuid);
-		return value == null? 0 : value;
+		return playerScores.get(uuid);
 	}
 	
 	public synchronized void setScore(@Nonnull UUID uuid, int value)
 	{
-		playerScores.put(uuid, value);
+		playerScores.set(uuid, value);
 	}
 	
 	public synchronized boolean hasEntry(@Nonnull UUID uuid)
     {
-        return playerScores.containsKey(uuid);
+        return playerScores.hasProgress(uuid);
     }
 	
 	@Override
 	public synchronized NBTTagList writeToNBT(NBTTagList nbt, @Nullable List<UUID> subset)
 	{
-		for(Entry<UUID, Integer> entry : playerScores.entrySet())
+		if(subset != null)
 		{
-		    if(subset != null && !subset.contains(entry.getKey())) continue;
-			NBTTagCompound jObj = new NBTTagCompound();
-			jObj.setString("uuid", entry.getKey().toString());
-			jObj.setInteger("value", entry.getValue());
-			nbt.appendTag(jObj);
+			for(UUID uuid : subset)
+			{
+				if(playerScores.hasProgress(uuid)) nbt.appendTag(writeScore(uuid, playerScores.get(uuid)));
+			}
+		} else
+		{
+			playerScores.forEach((uuid, value) -> nbt.appendTag(writeScore(uuid, value)));
 		}
 		
 		return nbt;
 	}
 	
+	private static NBTTagCompound writeScore(UUID uuid, int value)
+	{
+		NBTTagCompound jObj = new NBTTagCompound();
+		jObj.setString("uuid", uuid.toString());
+		jObj.setInteger("value", value);
+		return jObj;
+	}
+	
 	@Override
 	public synchronized void readFromNBT(NBTTagList nbt, boolean merge)
 	{
-        if(!merge) playerScores.clear();
+        if(!merge) playerScores.reset(null);
 		
 		for(int i = 0; i < nbt.tagCount(); i++)
 		{
 			try
 			{
 			    NBTTagCompound tag = nbt.getCompoundTagAt(i);
-				playerScores.put(UUID.fromString(tag.getString("uuid")), tag.getInteger("value"));
+				playerScores.set(UUID.fromString(tag.getString("uuid")), tag.getInteger("value"));
 				
 			} catch(Exception ignored){}
 		}
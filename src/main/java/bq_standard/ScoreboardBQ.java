@@ -16,6 +16,15 @@ public class ScoreboardBQ implements INBTPartial<NBTTagList, UUID>
     public static final ScoreboardBQ INSTANCE = new ScoreboardBQ();
     
 	private final TreeMap<String, ScoreBQ> objectives = new TreeMap<>();
+	private volatile int version = 0;
+	
+	/**
+	 * Changes whenever the scores are replaced wholesale (reset or reloaded) rather than set one at a time
+	 */
+	public int getVersion()
+	{
+	    return version;
+	}
 	
 	public synchronized int getScore(@Nonnull UUID uuid, @Nonnull String scoreName)
 	{
@@ -29,10 +38,20 @@ public class ScoreboardBQ implements INBTPartial<NBTTagList, UUID>
 		score.setScore(uuid, value);
 	}
 	
+	public synchronized void reset()
+	{
+	    objectives.clear();
+	    version++;
+	}
+	
 	@Override
 	public synchronized void readFromNBT(NBTTagList nbt, boolean merge)
 	{
-        if(!merge) objectives.clear();
+        if(!merge)
+        {
+            objectives.clear();
+            version++;
+        }
 		for(int i = 0; i < nbt.tagCount(); i++)
 		{
 			NBTTagCompound jObj = nbt.getCompoundTagAt(i);
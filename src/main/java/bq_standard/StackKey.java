@@ -0,0 +1,117 @@
+package bq_standard;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraftforge.fluids.FluidContainerRegistry;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.IFluidContainerItem;
+import net.minecraftforge.oredict.OreDictionary;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * The identity of an item stack regardless of its size (item, damage and a private copy of its NBT) for use as a map key.
+ * Ore IDs and fluid contents are looked up the first time they're requested and remembered for the life of the key.
+ */
+public class StackKey
+{
+    public final Item item;
+    public final int damage;
+    @Nullable
+    public final NBTTagCompound tags;
+    private final int hash;
+
+    private ItemStack sample = null;
+    private int[] oreIDs = null;
+    private FluidStack fluid = null;
+    private boolean fluidChecked = false;
+
+    public StackKey(@Nonnull ItemStack stack)
+    {
+        this.item = stack.getItem();
+        this.damage = stack.getItemDamage();
+        this.tags = stack.stackTagCompound == null ? null : (NBTTagCompound)stack.stackTagCompound.copy();
+        this.hash = (31 * System.identityHashCode(item) + damage) * 31 + (tags == null ? 0 : tags.hashCode());
+    }
+
+    /**
+     * Whether the given stack has the same item, damage and NBT as this key
+     */
+    public boolean matches(@Nullable ItemStack stack)
+    {
+        return stack != null && stack.getItem() == item && stack.getItemDamage() == damage && Objects.equals(stack.stackTagCompound, tags);
+    }
+
+    /**
+     * A single item of this type. Shared by every caller so it must NOT be modified
+     */
+    @Nonnull
+    public ItemStack getStack()
+    {
+        if(sample == null)
+        {
+            sample = new ItemStack(item, 1, damage);
+            sample.stackTagCompound = tags;
+        }
+
+        return sample;
+    }
+
+    @Nonnull
+    public int[] getOreIDs()
+    {
+        if(oreIDs == null) oreIDs = OreDictionary.getOreIDs(getStack());
+        return oreIDs;
+    }
+
+    public boolean hasOreID(int id)
+    {
+        for(int i : getOreIDs())
+        {
+            if(i == id) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * The fluid held by a single item of this type or null if it isn't a filled container
+     */
+    @Nullable
+    public FluidStack getFluid()
+    {
+        if(!fluidChecked)
+        {
+            if(item instanceof IFluidContainerItem)
+            {
+                fluid = ((IFluidContainerItem)item).getFluid(getStack());
+            } else if(FluidContainerRegistry.isFilledContainer(getStack()))
+            {
+                fluid = FluidContainerRegistry.getFluidForFilledItem(getStack());
+            }
+
+            fluidChecked = true;
+        }
+
+        return fluid;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(this == obj) return true;
+        if(!(obj instanceof StackKey)) return false;
+
+        StackKey key = (StackKey)obj;
+        return key.hash == hash && key.item == item && key.damage == damage && Objects.equals(key.tags, tags);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+}
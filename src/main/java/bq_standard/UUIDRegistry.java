@@ -0,0 +1,108 @@
+package bq_standard;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out a small dense int index for every questing UUID so task progress, scores and reward choices can use bitmaps
+ * and primitive arrays instead of each holding their own UUID objects. Indices are never reused or removed while the game
+ * world is running and the registry is cleared between worlds. Lookups are lock free, registering a new UUID is
+ * synchronised. Indices are never saved. Everything written to disk refers to players by UUID.
+ */
+public class UUIDRegistry
+{
+    public static final UUIDRegistry INSTANCE = new UUIDRegistry();
+
+    private final ConcurrentHashMap<UUID, Integer> indexMap = new ConcurrentHashMap<>();
+    private volatile UUID[] uuids = new UUID[64];
+    private int count = 0;
+
+    /**
+     * The index of the given UUID, registering it if this is the first time it's been seen
+     */
+    public int getIndex(@Nonnull UUID uuid)
+    {
+        Integer index = indexMap.get(uuid);
+        return index != null ? index : register(uuid);
+    }
+
+    /**
+     * The index of the given UUID or -1 if it was never registered. Use this for lookups that shouldn't grow the registry
+     */
+    public int findIndex(@Nonnull UUID uuid)
+    {
+        Integer index = indexMap.get(uuid);
+        return index == null ? -1 : index;
+    }
+
+    @Nullable
+    public UUID getUUID(int index)
+    {
+        UUID[] array = uuids;
+        return index < 0 || index >= array.length ? null : array[index];
+    }
+
+    public int size()
+    {
+        return indexMap.size();
+    }
+
+    /**
+     * Forgets every UUID. Only safe once nothing holds indices any more, i.e. between worlds
+     */
+    public synchronized void reset()
+    {
+        indexMap.clear();
+        uuids = new UUID[64];
+        count = 0;
+    }
+
+    /**
+     * Packs the UUIDs into four ints each. 1.7.10 NBT has no long arrays so this is the most compact form it can save
+     */
+    @Nonnull
+    public static int[] pack(@Nonnull List<UUID> list)
+    {
+        int[] data = new int[list.size() * 4];
+
+        for(int i = 0; i < list.size(); i++)
+        {
+            UUID uuid = list.get(i);
+            data[i * 4] = (int)(uuid.getMostSignificantBits() >>> 32);
+            data[i * 4 + 1] = (int)uuid.getMostSignificantBits();
+            data[i * 4 + 2] = (int)(uuid.getLeastSignificantBits() >>> 32);
+            data[i * 4 + 3] = (int)uuid.getLeastSignificantBits();
+        }
+
+        return data;
+    }
+
+    /**
+     * Reads back the UUID packed at the given offset by pack()
+     */
+    @Nonnull
+    public static UUID unpack(@Nonnull int[] data, int offset)
+    {
+        long most = ((long)data[offset] << 32) | (data[offset + 1] & 0xFFFFFFFFL);
+        long least = ((long)data[offset + 2] << 32) | (data[offset + 3] & 0xFFFFFFFFL);
+        return new UUID(most, least);
+    }
+
+    private synchronized int register(@Nonnull UUID uuid)
+    {
+        Integer existing = indexMap.get(uuid);
+        if(existing != null) return existing;
+
+        UUID[] array = uuids;
+        if(count >= array.length) array = Arrays.copyOf(array, array.length * 2);
+        array[count] = uuid;
+        uuids = array; // Published before the map entry so anyone holding the index can resolve it
+
+        indexMap.put(uuid, count);
+        return count++;
+    }
+}
@@ -1,21 +1,14 @@
 package bq_standard;
 
+import bq_standard.handlers.XPTracker;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.network.play.server.S1FPacketSetExperience;
 
 public class XPHelper
 {
-	// Pre-calculated XP levels at 1M intervals for speed searching
-	private static long[] QUICK_XP = new long[2147];
-	
-	static
-	{
-		for(int i = 0; i < QUICK_XP.length; i++)
-		{
-			QUICK_XP[i] = getLevelXP(i * 1000000);
-		}
-	}
+	// Highest level the inversion will return. Same cap as the old level by level search
+	private static final int MAX_LEVEL = Integer.MAX_VALUE - 1;
 	
 	public static void addXP(EntityPlayer player, long xp)
 	{
@@ -24,7 +17,7 @@ public class XPHelper
 	
 	public static void addXP(EntityPlayer player, long xp, boolean sync)
 	{
-		long experience = getPlayerXP(player) + xp;
+		long experience = Math.max(0L, saturatedAdd(getPlayerXP(player), xp));
 		player.experienceTotal = experience >= Integer.MAX_VALUE? Integer.MAX_VALUE : (int)experience;
 		player.experienceLevel = getXPLevel(experience);
 		long expForLevel = getLevelXP(player.experienceLevel);
@@ -32,6 +25,8 @@ public class XPHelper
 		player.experience = Math.max(0F, player.experience); // Sanity check
 		
 		if(sync && player instanceof EntityPlayerMP) syncXP((EntityPlayerMP)player);
+		
+		XPTracker.INSTANCE.markChanged(player);
 	}
 	
 	public static void syncXP(EntityPlayerMP player)
@@ -43,51 +38,88 @@ public class XPHelper
 	public static long getPlayerXP(EntityPlayer player)
 	{
 	    // Math.max is used here because for some reason the player.experience float value can sometimes be negitive in error
-		return getLevelXP(player.experienceLevel) + (long)(xpBarCap(player) * Math.max(0D, player.experience));
+		return saturatedAdd(getLevelXP(player.experienceLevel), (long)(xpBarCap(player) * Math.max(0D, player.experience)));
 	}
 	
 	public static long xpBarCap(EntityPlayer player)
 	{
-		if(player.experienceLevel < 16)
+		long level = player.experienceLevel;
+		
+		if(level < 16)
 		{
-			return (long)(2D * player.experienceLevel + 7L);
-		} else if(player.experienceLevel < 31)
+			return 2L * level + 7L;
+		} else if(level < 31)
 		{
-			return (long)(5D * player.experienceLevel - 38L);
+			return 5L * level - 38L;
 		} else
 		{
-			return (long)(9D * player.experienceLevel - 158L);
+			return 9L * level - 158L;
 		}
 	}
 	
+	/**
+	 * The highest level whose total XP is no more than the given amount. Solves the quadratic for the matching segment of
+	 * the XP curve then corrects the estimate against the exact totals, so it runs in constant time for any amount
+	 */
 	public static int getXPLevel(long xp)
 	{
 		if(xp <= 0) return 0;
+		if(xp < 272L) return (int)(xp / 17L); // Below level 16
+		if(xp >= Long.MAX_VALUE) return MAX_LEVEL; // Every level from here up saturates
 		
-		int i = 0;
+		int level;
 		
-		while(i < QUICK_XP.length && QUICK_XP[i] <= xp) i++;
-		
-		if(i > 0) i = (i - 1) * 1000000;
+		if(xp < 887L) // Below level 31
+		{
+			level = (int)((59D + Math.sqrt(24D * xp - 5159D)) / 6D);
+		} else
+		{
+			double estimate = (303D + Math.sqrt(56D * xp - 32511D)) / 14D;
+			level = estimate >= MAX_LEVEL ? MAX_LEVEL : (int)estimate;
+		}
 		
-		while (i < Integer.MAX_VALUE && getLevelXP(i) <= xp) i++;
+		// Floating point error is at most a couple of levels either way for the largest totals
+		while(level > 0 && getLevelXP(level) > xp) level--;
+		while(level < MAX_LEVEL && getLevelXP(level + 1) <= xp) level++;
 		
-		return i - 1;
+		return level;
 	}
 	
+	/**
+	 * The total XP needed to reach the given level. Exact for every level and saturates at Long.MAX_VALUE rather than overflowing
+	 */
 	public static long getLevelXP(int level)
 	{
 		if(level <= 0) return 0;
 		
 		if(level < 16)
 		{
-			return level * 17;
+			return level * 17L;
 		} else if(level < 31)
 		{
-			return (long)(1.5D * Math.pow(level, 2D) - (29.5D * level) + 360L);
+			return halfProduct(level, 3L * level - 59L) + 360L; // 1.5L^2 - 29.5L + 360
 		} else
 		{
-			return (long)(3.5D * Math.pow(level, 2D) - (151.5D * level) + 2220L);
+			return saturatedAdd(halfProduct(level, 7L * level - 303L), 2220L); // 3.5L^2 - 151.5L + 2220
 		}
 	}
+	
+	/**
+	 * level * factor / 2 without overflowing. One of the two is always even for the XP curve so this is exact
+	 */
+	private static long halfProduct(long level, long factor)
+	{
+		long a = (level & 1L) == 0 ? level / 2L : level;
+		long b = (level & 1L) == 0 ? factor : factor / 2L;
+		
+		if(a != 0 && Math.abs(b) > Long.MAX_VALUE / Math.abs(a)) return b < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+		return a * b;
+	}
+	
+	private static long saturatedAdd(long a, long b)
+	{
+		long sum = a + b;
+		if(((a ^ sum) & (b ^ sum)) < 0) return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE; // Both operands share a sign the result doesn't
+		return sum;
+	}
 }
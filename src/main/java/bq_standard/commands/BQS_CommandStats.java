@@ -0,0 +1,54 @@
+package bq_standard.commands;
+
+import bq_standard.handlers.EventHandler;
+import bq_standard.handlers.TaskExecutor;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+
+public class BQS_CommandStats extends CommandBase
+{
+	@Override
+	public String getCommandName()
+	{
+		return "bqs_stats";
+	}
+
+	@Override
+	public String getCommandUsage(ICommandSender sender)
+	{
+		return "/bqs_stats [reset]";
+	}
+
+	@Override
+    public int getRequiredPermissionLevel()
+    {
+        return 2;
+    }
+
+	@Override
+	public void processCommand(ICommandSender sender, String[] args) throws CommandException
+	{
+		if(args.length == 1 && args[0].equalsIgnoreCase("reset"))
+		{
+			EventHandler.resetServerTaskStats();
+			sender.addChatMessage(new ChatComponentText("Reset server task wait times"));
+		} else if(args.length == 0)
+		{
+			sender.addChatMessage(new ChatComponentText("Server tasks queued: " + EventHandler.getServerTaskDepth()));
+			sender.addChatMessage(new ChatComponentText("Last server task wait: " + toMillis(EventHandler.getLastServerTaskWait()) + "ms"));
+			sender.addChatMessage(new ChatComponentText("Longest server task wait: " + toMillis(EventHandler.getMaxServerTaskWait()) + "ms"));
+			sender.addChatMessage(new ChatComponentText("Task checks pending: " + TaskExecutor.INSTANCE.getPending()));
+		} else
+		{
+			throw new WrongUsageException(getCommandUsage(sender));
+		}
+	}
+
+	private static String toMillis(long nanos)
+	{
+		return String.format("%.2f", nanos / 1000000D);
+	}
+}
@@ -3,4 +3,5 @@ package bq_standard.core;
 public class BQS_Settings
 {
 	public static boolean hideUpdates = false;
+	public static int taskBudget = 2000;
 }
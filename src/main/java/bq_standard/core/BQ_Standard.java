@@ -1,11 +1,25 @@
 package bq_standard.core;
 
+import bq_standard.ScoreboardBQ;
+import bq_standard.UUIDRegistry;
+import bq_standard.commands.BQS_CommandStats;
 import bq_standard.commands.BQS_Commands;
 import bq_standard.core.proxies.CommonProxy;
 import bq_standard.handlers.ConfigHandler;
 import bq_standard.handlers.GuiHandler;
 import bq_standard.handlers.LootSaveLoad;
+import bq_standard.handlers.ParticipantCache;
+import bq_standard.handlers.PlayerContainerListener;
+import bq_standard.handlers.ProgressBatch;
+import bq_standard.handlers.RecipeCache;
+import bq_standard.handlers.ScoreSnapshot;
+import bq_standard.handlers.TaskExecutor;
+import bq_standard.handlers.TaskIndex;
+import bq_standard.handlers.TaskScheduler;
+import bq_standard.handlers.XPTracker;
 import bq_standard.items.ItemLootChest;
+import bq_standard.tasks.InventorySnapshot;
+import bq_standard.tasks.PartyInventory;
 import cpw.mods.fml.common.Loader;
 import cpw.mods.fml.common.Mod;
 import cpw.mods.fml.common.Mod.EventHandler;
@@ -75,6 +89,14 @@ public class BQ_Standard
         hasNEI = Loader.isModLoaded("NotEnoughItems");
     }
 	
+	@EventHandler
+	public void serverAboutToStart(FMLServerAboutToStartEvent event)
+	{
+	    // Player indices only mean something for the world they were handed out in. Cleared before anything loads its progress
+	    ScoreboardBQ.INSTANCE.reset();
+	    UUIDRegistry.INSTANCE.reset();
+	}
+	
 	@EventHandler
 	public void serverStart(FMLServerStartingEvent event)
 	{
@@ -83,6 +105,7 @@ public class BQ_Standard
 		ServerCommandManager manager = (ServerCommandManager) command;
 		
 		manager.registerCommand(new BQS_Commands());
+		manager.registerCommand(new BQS_CommandStats());
 		
 		LootSaveLoad.INSTANCE.LoadLoot(event.getServer());
 	}
@@ -91,5 +114,18 @@ public class BQ_Standard
     public void serverStopped(FMLServerStoppedEvent event)
     {
         LootSaveLoad.INSTANCE.UnloadLoot();
+        TaskIndex.INSTANCE.invalidate(null);
+        InventorySnapshot.remove(null);
+        PlayerContainerListener.remove(null);
+        PartyInventory.invalidate(null);
+        TaskScheduler.INSTANCE.removePlayer(null);
+        TaskExecutor.INSTANCE.reset();
+        ParticipantCache.INSTANCE.reset();
+        ProgressBatch.INSTANCE.reset();
+        RecipeCache.INSTANCE.reset();
+        XPTracker.INSTANCE.remove(null);
+        ScoreSnapshot.INSTANCE.remove(null);
+        ScoreboardBQ.INSTANCE.reset();
+        UUIDRegistry.INSTANCE.reset(); // Last, once nothing from this world is left holding indices
     }
 }
@@ -20,6 +20,7 @@ public class ConfigHandler
 		config.load();
 		
 		BQS_Settings.hideUpdates = config.getBoolean("Hide Updates", Configuration.CATEGORY_GENERAL, false, "Hide update notifications");
+		BQS_Settings.taskBudget = config.getInt("Task Budget", Configuration.CATEGORY_GENERAL, 2000, 100, 50000, "Microseconds per server tick spent checking quest tasks and running queued command rewards. Work beyond this carries over to the next tick");
 		
 		config.save();
 		
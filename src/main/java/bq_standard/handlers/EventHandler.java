@@ -1,13 +1,14 @@
 package bq_standard.handlers;
 
-import betterquesting.api.api.ApiReference;
 import betterquesting.api.api.QuestingAPI;
-import betterquesting.api.events.BQLivingUpdateEvent;
-import betterquesting.api.properties.NativeProps;
+import betterquesting.api.events.DatabaseEvent;
+import betterquesting.api.events.QuestEvent;
 import betterquesting.api.questing.IQuest;
-import betterquesting.api.questing.tasks.ITask;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
+import betterquesting.api2.utils.Tuple2;
+import bq_standard.LazyNBT;
+import bq_standard.core.BQS_Settings;
 import bq_standard.core.BQ_Standard;
 import bq_standard.network.handlers.NetLootSync;
 import bq_standard.tasks.*;
@@ -19,6 +20,7 @@ import cpw.mods.fml.common.eventhandler.SubscribeEvent;
 import cpw.mods.fml.common.gameevent.PlayerEvent.ItemCraftedEvent;
 import cpw.mods.fml.common.gameevent.PlayerEvent.ItemSmeltedEvent;
 import cpw.mods.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import cpw.mods.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
 import cpw.mods.fml.common.gameevent.TickEvent.Phase;
 import cpw.mods.fml.common.gameevent.TickEvent.ServerTickEvent;
 import net.minecraft.block.Block;
@@ -26,7 +28,6 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.inventory.InventoryCrafting;
 import net.minecraft.item.ItemStack;
-import net.minecraft.item.crafting.CraftingManager;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
 import net.minecraftforge.event.entity.player.AnvilRepairEvent;
@@ -34,13 +35,17 @@ import net.minecraftforge.event.entity.player.AttackEntityEvent;
 import net.minecraftforge.event.entity.player.EntityInteractEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent.Action;
+import net.minecraftforge.event.entity.player.PlayerPickupXpEvent;
 import net.minecraftforge.event.world.BlockEvent.BreakEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import org.apache.commons.lang3.Validate;
 
-import java.util.ArrayDeque;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @SuppressWarnings("unused")
 public class EventHandler
@@ -51,18 +56,18 @@ public class EventHandler
         if(event.entityPlayer == null || event.entityPlayer.worldObj.isRemote || event.isCanceled()) return;
         
 		EntityPlayer player = event.entityPlayer;
-        ParticipantInfo pInfo = new ParticipantInfo(player);
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(player);
+        if(!TaskIndex.INSTANCE.hasInterest(pInfo, TaskIndex.INTERACT_ITEM)) return;
 		
 		Block block = player.worldObj.getBlock(event.x, event.y, event.z);
 		int meta = player.worldObj.getBlockMetadata(event.x, event.y, event.z);
 		boolean isHit = event.action == Action.LEFT_CLICK_BLOCK;
+		LazyNBT tileTags = LazyNBT.ofBlock(player.worldObj, block, meta, event.x, event.y, event.z);
 		
-		for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
+		for(Tuple2<DBEntry<IQuest>, TaskInteractItem> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskInteractItem.class))
 		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof TaskInteractItem) ((TaskInteractItem)task.getValue()).onInteract(pInfo, entry, player.getHeldItem(), block, meta, event.x, event.y, event.z, isHit);
-            }
+		    entry.getSecond().onInteract(pInfo, entry.getFirst(), player.getHeldItem(), block, meta, tileTags, isHit);
+		    TaskIndex.INSTANCE.checkComplete(pInfo, entry.getSecond());
 		}
     }
     
@@ -72,14 +77,14 @@ public class EventHandler
         if(event.entityPlayer == null || event.target == null || event.entityPlayer.worldObj.isRemote || event.isCanceled()) return;
         
 		EntityPlayer player = event.entityPlayer;
-        ParticipantInfo pInfo = new ParticipantInfo(player);
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(player);
+        if(!TaskIndex.INSTANCE.hasInterest(pInfo, TaskIndex.INTERACT_ENTITY)) return;
+        LazyNBT targetTags = LazyNBT.ofEntity(event.target);
 		
-		for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
+		for(Tuple2<DBEntry<IQuest>, TaskInteractEntity> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskInteractEntity.class, event.target.getClass(), TaskInteractEntity::isTargetClass))
 		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof TaskInteractEntity) ((TaskInteractEntity)task.getValue()).onInteract(pInfo, entry, player.getHeldItem(), event.target, true);
-            }
+		    entry.getSecond().onInteract(pInfo, entry.getFirst(), player.getHeldItem(), event.target, targetTags, true);
+		    TaskIndex.INSTANCE.checkComplete(pInfo, entry.getSecond());
 		}
     }
     
@@ -89,14 +94,14 @@ public class EventHandler
         if(event.entityPlayer == null || event.target == null || event.entityPlayer.worldObj.isRemote || event.isCanceled()) return;
         
 		EntityPlayer player = event.entityPlayer;
-        ParticipantInfo pInfo = new ParticipantInfo(player);
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(player);
+        if(!TaskIndex.INSTANCE.hasInterest(pInfo, TaskIndex.INTERACT_ENTITY)) return;
+        LazyNBT targetTags = LazyNBT.ofEntity(event.target);
 		
-		for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
+		for(Tuple2<DBEntry<IQuest>, TaskInteractEntity> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskInteractEntity.class, event.target.getClass(), TaskInteractEntity::isTargetClass))
 		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof TaskInteractEntity) ((TaskInteractEntity)task.getValue()).onInteract(pInfo, entry, player.getHeldItem(), event.target, false);
-            }
+		    entry.getSecond().onInteract(pInfo, entry.getFirst(), player.getHeldItem(), event.target, targetTags, false);
+		    TaskIndex.INSTANCE.checkComplete(pInfo, entry.getSecond());
 		}
     }
     
@@ -105,22 +110,21 @@ public class EventHandler
 	{
 		if(event.player == null || event.player.worldObj.isRemote) return;
         
-        ParticipantInfo pInfo = new ParticipantInfo(event.player);
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(event.player);
+        if(!TaskIndex.INSTANCE.hasInterest(pInfo, TaskIndex.CRAFTING)) return;
         
         ItemStack refStack = event.crafting.copy();
         
         if(refStack.stackSize <= 0 && event.craftMatrix instanceof InventoryCrafting) // Hack for broken-ass shift clicking reporting empty stacks
         {
-            ItemStack result = CraftingManager.getInstance().findMatchingRecipe((InventoryCrafting)event.craftMatrix, event.player.worldObj);
+            ItemStack result = RecipeCache.INSTANCE.findMatchingRecipe((InventoryCrafting)event.craftMatrix, event.player.worldObj);
             if(result != null) refStack.stackSize = result.stackSize;
         }
 		
-		for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
+		for(Tuple2<DBEntry<IQuest>, TaskCrafting> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskCrafting.class))
 		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof TaskCrafting) ((TaskCrafting)task.getValue()).onItemCraft(pInfo, entry, refStack);
-            }
+		    entry.getSecond().onItemCraft(pInfo, entry.getFirst(), refStack);
+		    TaskIndex.INSTANCE.checkComplete(pInfo, entry.getSecond());
 		}
 	}
 	
@@ -129,17 +133,16 @@ public class EventHandler
 	{
 		if(event.player == null || event.player.worldObj.isRemote) return;
 		
-        ParticipantInfo pInfo = new ParticipantInfo(event.player);
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(event.player);
+        if(!TaskIndex.INSTANCE.hasInterest(pInfo, TaskIndex.CRAFTING)) return;
 		
 		ItemStack refStack = event.smelting.copy();
 		if(refStack.stackSize <= 0) refStack.stackSize = 1; // Doesn't really fix much but it's better than nothing I suppose
 		
-		for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
+		for(Tuple2<DBEntry<IQuest>, TaskCrafting> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskCrafting.class))
 		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof TaskCrafting) ((TaskCrafting)task.getValue()).onItemSmelt(pInfo, entry, refStack);
-            }
+		    entry.getSecond().onItemSmelt(pInfo, entry.getFirst(), refStack);
+		    TaskIndex.INSTANCE.checkComplete(pInfo, entry.getSecond());
 		}
 	}
 	
@@ -148,31 +151,37 @@ public class EventHandler
 	{
 		if(event.entityPlayer == null || event.entityPlayer.worldObj.isRemote) return;
         
-        ParticipantInfo pInfo = new ParticipantInfo(event.entityPlayer);
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(event.entityPlayer);
+        if(!TaskIndex.INSTANCE.hasInterest(pInfo, TaskIndex.CRAFTING)) return;
 		
-		for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
+		for(Tuple2<DBEntry<IQuest>, TaskCrafting> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskCrafting.class))
 		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof TaskCrafting) ((TaskCrafting)task.getValue()).onItemAnvil(pInfo, entry, event.output.copy());
-            }
+		    entry.getSecond().onItemAnvil(pInfo, entry.getFirst(), event.output.copy());
+		    TaskIndex.INSTANCE.checkComplete(pInfo, entry.getSecond());
 		}
 	}
 	
+	@SubscribeEvent(priority = EventPriority.LOWEST)
+	public void onXPPickup(PlayerPickupXpEvent event)
+	{
+		if(event.entityPlayer == null || event.entityPlayer.worldObj.isRemote || event.isCanceled()) return;
+		
+		XPTracker.INSTANCE.markChanged(event.entityPlayer); // The XP is only added after this fires. Tasks are updated at the end of the tick
+	}
+	
 	@SubscribeEvent(priority = EventPriority.LOWEST)
 	public void onEntityKilled(LivingDeathEvent event)
 	{
 		if(event.source == null || !(event.source.getEntity() instanceof EntityPlayer) || event.source.getEntity().worldObj.isRemote || event.isCanceled()) return;
 		
 		EntityPlayer player = (EntityPlayer)event.source.getEntity();
-        ParticipantInfo pInfo = new ParticipantInfo(player);
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(player);
+        if(!TaskIndex.INSTANCE.hasInterest(pInfo, TaskIndex.HUNT)) return;
+        LazyNBT targetTags = LazyNBT.ofEntity(event.entityLiving);
 		
-		for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
+		for(Tuple2<DBEntry<IQuest>, TaskHunt> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskHunt.class, event.entityLiving.getClass(), TaskHunt::isTargetClass))
 		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof TaskHunt) ((TaskHunt)task.getValue()).onKilledByPlayer(pInfo, entry, event.entityLiving, event.source);
-            }
+		    if(entry.getSecond().isValidKill(event.entityLiving, event.source, targetTags)) ProgressBatch.INSTANCE.addKill(pInfo, entry.getFirst(), entry.getSecond());
 		}
 	}
 	
@@ -181,43 +190,24 @@ public class EventHandler
 	{
 		if(event.getPlayer() == null || event.getPlayer().worldObj.isRemote || event.isCanceled()) return;
 		
-        ParticipantInfo pInfo = new ParticipantInfo(event.getPlayer());
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(event.getPlayer());
+        if(!TaskIndex.INSTANCE.hasInterest(pInfo, TaskIndex.BLOCK_BREAK)) return;
+        LazyNBT tileTags = LazyNBT.ofBlock(event.world, event.block, event.blockMetadata, event.x, event.y, event.z);
 		
-		for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
+		for(Tuple2<DBEntry<IQuest>, TaskBlockBreak> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskBlockBreak.class))
 		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof TaskBlockBreak) ((TaskBlockBreak)task.getValue()).onBlockBreak(pInfo, entry, event.block, event.blockMetadata, event.x, event.y, event.z);
-            }
+		    int index = entry.getSecond().matchBlock(event.block, event.blockMetadata, tileTags);
+		    if(index >= 0) ProgressBatch.INSTANCE.addBreak(pInfo, entry.getFirst(), entry.getSecond(), index);
 		}
 	}
 	
-	@SubscribeEvent
-    public void onEntityLiving(BQLivingUpdateEvent event)
-    {
-        if(!(event.entityLiving instanceof EntityPlayer) || event.entityLiving.worldObj.isRemote || event.entityLiving.ticksExisted%20 != 0 || QuestingAPI.getAPI(ApiReference.SETTINGS).getProperty(NativeProps.EDIT_MODE)) return;
-        
-        EntityPlayer player = (EntityPlayer)event.entityLiving;
-        ParticipantInfo pInfo = new ParticipantInfo(player);
-		
-		for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
-		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof ITaskTickable)
-                {
-                    ((ITaskTickable)task.getValue()).tickTask(pInfo, entry);
-                }
-            }
-		}
-    }
-    
     @SubscribeEvent
     public void onEntityCreated(EntityJoinWorldEvent event)
     {
         if(!(event.entity instanceof EntityPlayer) || event.entity.worldObj.isRemote) return;
         
 		PlayerContainerListener.refreshListener((EntityPlayer)event.entity);
+		TaskScheduler.INSTANCE.addPlayer((EntityPlayer)event.entity);
     }
 	
 	@SubscribeEvent
@@ -236,9 +226,45 @@ public class EventHandler
 		if(!event.player.worldObj.isRemote && event.player instanceof EntityPlayerMP)
 		{
             NetLootSync.sendSync((EntityPlayerMP)event.player);
+            ParticipantCache.INSTANCE.invalidate(null); // Party members' active player lists just changed
 		}
     }
 	
+	@SubscribeEvent
+    public void onPlayerLeave(PlayerLoggedOutEvent event)
+    {
+		if(!event.player.worldObj.isRemote)
+		{
+		    UUID uuid = QuestingAPI.getQuestingUUID(event.player);
+		    TaskIndex.INSTANCE.invalidate(uuid);
+		    ParticipantCache.INSTANCE.invalidate(uuid); // Drops the entry so it doesn't keep the player entity (and its world) loaded
+		    ParticipantCache.INSTANCE.invalidate(null); // Party members' active player lists just changed
+		    InventorySnapshot.remove(uuid);
+		    PlayerContainerListener.remove(uuid);
+		    TaskScheduler.INSTANCE.removePlayer(uuid);
+		    PartyInventory.invalidate(uuid);
+		    XPTracker.INSTANCE.remove(uuid);
+		    ScoreSnapshot.INSTANCE.remove(uuid);
+		}
+    }
+	
+	@SubscribeEvent
+    public void onDatabaseUpdate(DatabaseEvent.Update event)
+    {
+        TaskIndex.INSTANCE.invalidate(null); // Quest or task setup may have changed underneath the cached entries
+        PartyInventory.invalidate(null); // Same for party membership
+        ParticipantCache.INSTANCE.invalidate(null);
+        ScoreSnapshot.INSTANCE.remove(null); // Anything reset or reloaded needs its scores copied over again
+    }
+	
+	@SubscribeEvent
+    public void onQuestEvent(QuestEvent event)
+    {
+        ParticipantCache.INSTANCE.invalidate(null); // Completions and resets change which quests are active
+        TaskIndex.INSTANCE.invalidate(null); // Brings back tasks that were dropped on completion if they've since been reset
+        ScoreSnapshot.INSTANCE.remove(null);
+    }
+	
 	@SubscribeEvent
     public void onWorldSave(WorldEvent.Save event)
     {
@@ -248,7 +274,10 @@ public class EventHandler
         }
     }
 	
-	private static final ArrayDeque<FutureTask> serverTasks = new ArrayDeque<>();
+	private static final ConcurrentLinkedQueue<QueuedTask> serverTasks = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger serverTaskDepth = new AtomicInteger();
+	private static volatile long lastTaskWait = 0L;
+	private static final AtomicLong maxTaskWait = new AtomicLong();
 	private static Thread serverThread = null;
 	
 	// NOTE: This is slightly different to the version in the base mod. This one will not immediately run tasks even if it's from the same thread.
@@ -257,23 +286,86 @@ public class EventHandler
         Validate.notNull(task);
         
         ListenableFutureTask<T> listenablefuturetask = ListenableFutureTask.create(task);
-
-        synchronized (serverTasks)
-        {
-            serverTasks.add(listenablefuturetask);
-            return listenablefuturetask;
-        }
+        serverTaskDepth.incrementAndGet();
+        serverTasks.add(new QueuedTask(listenablefuturetask));
+        return listenablefuturetask;
+    }
+    
+    /**
+     * Number of scheduled server tasks still waiting to run
+     */
+    public static int getServerTaskDepth()
+    {
+        return serverTaskDepth.get();
+    }
+    
+    /**
+     * Nanoseconds the most recently run server task spent in the queue
+     */
+    public static long getLastServerTaskWait()
+    {
+        return lastTaskWait;
+    }
+    
+    /**
+     * Longest time in nanoseconds any server task spent in the queue since the last reset
+     */
+    public static long getMaxServerTaskWait()
+    {
+        return maxTaskWait.get();
+    }
+    
+    public static void resetServerTaskStats()
+    {
+        lastTaskWait = 0L;
+        maxTaskWait.set(0L);
     }
 	
 	@SubscribeEvent
     public void onServerTick(ServerTickEvent event)
     {
-        if(event.phase != Phase.START) return;
+        if(event.phase == Phase.END)
+        {
+            ProgressBatch.INSTANCE.flush();
+            XPTracker.INSTANCE.tick();
+            TaskScheduler.INSTANCE.tick();
+            PlayerContainerListener.flushUpdates();
+            TaskExecutor.INSTANCE.run();
+            return;
+        }
+        
         if(serverThread == null) serverThread = Thread.currentThread();
         
-        synchronized(serverTasks)
+        // Anything left once the budget runs out waits for the next tick. At least one task runs per tick. The time spent
+        // here comes out of the same budget the TaskExecutor gets at the end of the tick
+        long start = System.nanoTime();
+        long deadline = start + BQS_Settings.taskBudget * 1000L;
+        QueuedTask next;
+        
+        while((next = serverTasks.poll()) != null)
+        {
+            serverTaskDepth.decrementAndGet();
+            long now = System.nanoTime();
+            long wait = now - next.queued;
+            lastTaskWait = wait;
+            maxTaskWait.accumulateAndGet(wait, Math::max);
+            
+            next.task.run();
+            
+            if(System.nanoTime() >= deadline) break;
+        }
+        
+        TaskExecutor.INSTANCE.useBudget(System.nanoTime() - start);
+    }
+    
+    private static class QueuedTask
+    {
+        private final FutureTask<?> task;
+        private final long queued = System.nanoTime();
+        
+        private QueuedTask(FutureTask<?> task)
         {
-            while(!serverTasks.isEmpty()) serverTasks.poll().run();
+            this.task = task;
         }
     }
 }
@@ -0,0 +1,82 @@
+package bq_standard.handlers;
+
+import betterquesting.api.api.QuestingAPI;
+import betterquesting.api2.utils.ParticipantInfo;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.server.MinecraftServer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Hands out the same ParticipantInfo for a player until something it was resolved from might have changed. Entries are
+ * dropped when the quest or party databases update, when quests change state, when anyone logs in or out and otherwise
+ * after a second as a safety net. Everything must be called from the server thread.
+ */
+public class ParticipantCache
+{
+    public static final ParticipantCache INSTANCE = new ParticipantCache();
+
+    private static final int MAX_AGE = 20;
+
+    private final HashMap<UUID, CachedInfo> cache = new HashMap<>();
+    private int version = 0;
+
+    @Nonnull
+    public ParticipantInfo get(@Nonnull EntityPlayer player)
+    {
+        UUID uuid = QuestingAPI.getQuestingUUID(player);
+        CachedInfo cached = cache.get(uuid);
+        int tick = getTick();
+
+        if(cached == null || cached.pInfo.PLAYER != player || cached.version != version || tick - cached.tick >= MAX_AGE || tick < cached.tick)
+        {
+            cached = new CachedInfo(new ParticipantInfo(player), version, tick);
+            cache.put(uuid, cached);
+        }
+
+        return cached.pInfo;
+    }
+
+    /**
+     * Drops the cached info of the given player or everyone if null
+     */
+    public void invalidate(@Nullable UUID uuid)
+    {
+        if(uuid == null)
+        {
+            version++; // Cheaper than clearing. Stale entries are replaced as they're requested
+        } else
+        {
+            cache.remove(uuid);
+        }
+    }
+
+    public void reset()
+    {
+        cache.clear();
+        version = 0;
+    }
+
+    private static int getTick()
+    {
+        MinecraftServer server = MinecraftServer.getServer();
+        return server == null ? 0 : server.getTickCounter();
+    }
+
+    private static class CachedInfo
+    {
+        private final ParticipantInfo pInfo;
+        private final int version;
+        private final int tick;
+
+        private CachedInfo(ParticipantInfo pInfo, int version, int tick)
+        {
+            this.pInfo = pInfo;
+            this.version = version;
+            this.tick = tick;
+        }
+    }
+}
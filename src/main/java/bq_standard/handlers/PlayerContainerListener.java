@@ -1,25 +1,26 @@
 package bq_standard.handlers;
 
-import betterquesting.api.api.ApiReference;
 import betterquesting.api.api.QuestingAPI;
 import betterquesting.api.questing.IQuest;
-import betterquesting.api.questing.tasks.ITask;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
+import betterquesting.api2.utils.Tuple2;
 import bq_standard.tasks.ITaskInventory;
+import bq_standard.tasks.InventorySnapshot;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.inventory.Container;
 import net.minecraft.inventory.ICrafting;
+import net.minecraft.inventory.Slot;
 import net.minecraft.item.ItemStack;
 
 import javax.annotation.Nonnull;
-import java.util.HashMap;
-import java.util.List;
-import java.util.UUID;
+import javax.annotation.Nullable;
+import java.util.*;
 
 public class PlayerContainerListener implements ICrafting
 {
     private static final HashMap<UUID, PlayerContainerListener> LISTEN_MAP = new HashMap<>();
+    private static final LinkedHashSet<PlayerContainerListener> DIRTY = new LinkedHashSet<>();
     
     static void refreshListener(@Nonnull EntityPlayer player)
     {
@@ -40,7 +41,31 @@ public class PlayerContainerListener implements ICrafting
         } catch(Exception ignored){}
     }
     
+    /**
+     * Forgets the given player's listener or everyone's if null. Any update still waiting on the executor is skipped
+     */
+    public static void remove(@Nullable UUID uuid)
+    {
+        if(uuid == null)
+        {
+            LISTEN_MAP.values().forEach((listener) -> listener.removed = true);
+            LISTEN_MAP.clear();
+            DIRTY.clear();
+            return;
+        }
+        
+        PlayerContainerListener listener = LISTEN_MAP.remove(uuid);
+        if(listener == null) return;
+        
+        listener.removed = true;
+        DIRTY.remove(listener);
+    }
+    
     private EntityPlayer player;
+    private final BitSet dirtySlots = new BitSet();
+    private boolean dirtyAll = false;
+    private boolean queued = false;
+    private boolean removed = false;
     
     private PlayerContainerListener(@Nonnull EntityPlayer player)
     {
@@ -50,28 +75,60 @@ public class PlayerContainerListener implements ICrafting
     @Override
     public void sendContainerAndContentsToPlayer(Container container, List nonNullList)
     {
-        updateTasks();
+        dirtyAll = true;
+        DIRTY.add(this);
     }
     
     @Override
     public void sendSlotContents(Container container, int i, ItemStack itemStack)
     {
-        updateTasks();
+        if(i < 0 || i >= container.inventorySlots.size()) return;
+        
+        Slot slot = container.getSlot(i);
+        if(slot.inventory != player.inventory) return; // Crafting grid and output. Not something any task reads
+        
+        dirtySlots.set(slot.getSlotIndex());
+        DIRTY.add(this);
     }
     
     @Override
     public void sendProgressBarUpdate(Container container, int i, int i1){}
     
+    /**
+     * Queues an inventory task update for every player whose inventory changed since the last flush. Called at the end of each server tick.
+     * Changes made while a player's update is still waiting on the executor are folded into that update
+     */
+    static void flushUpdates()
+    {
+        if(DIRTY.isEmpty()) return;
+        
+        for(PlayerContainerListener listener : DIRTY)
+        {
+            if(listener.queued) continue;
+            listener.queued = true;
+            TaskExecutor.INSTANCE.submitBackground(listener::updateTasks);
+        }
+        
+        DIRTY.clear();
+    }
+    
     private void updateTasks()
     {
-        ParticipantInfo pInfo = new ParticipantInfo(player);
+        BitSet changedSlots = dirtyAll ? null : (BitSet)dirtySlots.clone();
+        dirtySlots.clear();
+        dirtyAll = false;
+        queued = false;
+        
+        // Logged out while this was queued. Carrying on would bring back the snapshot and cached info dropped on logout
+        if(removed || player.isDead) return;
+        
+        InventorySnapshot.update(player, changedSlots);
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(player);
 		
-        for(DBEntry<IQuest> entry : QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests()))
+        for(Tuple2<DBEntry<IQuest>, ITaskInventory> entry : TaskIndex.INSTANCE.getTasks(pInfo, ITaskInventory.class))
 		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
-            {
-                if(task.getValue() instanceof ITaskInventory) ((ITaskInventory)task.getValue()).onInventoryChange(entry, pInfo);
-            }
+		    entry.getSecond().onInventoryChange(entry.getFirst(), pInfo, changedSlots);
+		    TaskIndex.INSTANCE.checkComplete(pInfo, entry.getSecond());
 		}
     }
 }
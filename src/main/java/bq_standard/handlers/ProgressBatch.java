@@ -0,0 +1,100 @@
+package bq_standard.handlers;
+
+import betterquesting.api.questing.IQuest;
+import betterquesting.api2.storage.DBEntry;
+import betterquesting.api2.utils.ParticipantInfo;
+import bq_standard.tasks.TaskBlockBreak;
+import bq_standard.tasks.TaskHunt;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * Collects block breaks and kills that already matched a task during the current tick and applies them in one go at the
+ * end of it. Matching still happens when the event fires (while the block or entity still exists) but progress is only
+ * written once per task and each quest is only marked dirty once per participant per tick, no matter how many events
+ * a vein miner or mob farm produced.
+ */
+public class ProgressBatch
+{
+    public static final ProgressBatch INSTANCE = new ProgressBatch();
+
+    private final LinkedHashMap<UUID, PlayerBatch> batches = new LinkedHashMap<>();
+
+    public void addBreak(@Nonnull ParticipantInfo pInfo, @Nonnull DBEntry<IQuest> quest, @Nonnull TaskBlockBreak task, int index)
+    {
+        PlayerBatch batch = getBatch(pInfo);
+        int[] counts = batch.breaks.get(task);
+
+        if(counts == null || counts.length <= index)
+        {
+            counts = counts == null ? new int[index + 1] : Arrays.copyOf(counts, index + 1);
+            batch.breaks.put(task, counts);
+        }
+
+        counts[index]++;
+        batch.quests.put(task, quest);
+    }
+
+    public void addKill(@Nonnull ParticipantInfo pInfo, @Nonnull DBEntry<IQuest> quest, @Nonnull TaskHunt task)
+    {
+        PlayerBatch batch = getBatch(pInfo);
+        batch.kills.merge(task, 1, Integer::sum);
+        batch.quests.put(task, quest);
+    }
+
+    private PlayerBatch getBatch(@Nonnull ParticipantInfo pInfo)
+    {
+        PlayerBatch batch = batches.get(pInfo.UUID);
+
+        if(batch == null)
+        {
+            batch = new PlayerBatch();
+            batches.put(pInfo.UUID, batch);
+        }
+
+        batch.pInfo = pInfo; // Use the latest view of the party
+        return batch;
+    }
+
+    /**
+     * Applies everything collected this tick. Called once at the end of each server tick
+     */
+    public void flush()
+    {
+        if(batches.isEmpty()) return;
+
+        List<PlayerBatch> pending = new ArrayList<>(batches.values());
+        batches.clear();
+
+        for(PlayerBatch batch : pending)
+        {
+            LinkedHashSet<Integer> dirty = new LinkedHashSet<>();
+
+            batch.breaks.forEach((task, counts) -> {
+                if(task.addBreaks(batch.pInfo, counts)) dirty.add(batch.quests.get(task).getID());
+                TaskIndex.INSTANCE.checkComplete(batch.pInfo, task);
+            });
+
+            batch.kills.forEach((task, kills) -> {
+                if(task.addKills(batch.pInfo, kills)) dirty.add(batch.quests.get(task).getID());
+                TaskIndex.INSTANCE.checkComplete(batch.pInfo, task);
+            });
+
+            if(dirty.size() > 0) batch.pInfo.markDirtyParty(new ArrayList<>(dirty));
+        }
+    }
+
+    public void reset()
+    {
+        batches.clear();
+    }
+
+    private static class PlayerBatch
+    {
+        private ParticipantInfo pInfo;
+        private final IdentityHashMap<TaskBlockBreak, int[]> breaks = new IdentityHashMap<>();
+        private final IdentityHashMap<TaskHunt, Integer> kills = new IdentityHashMap<>();
+        private final IdentityHashMap<Object, DBEntry<IQuest>> quests = new IdentityHashMap<>();
+    }
+}
@@ -0,0 +1,124 @@
+package bq_standard.handlers;
+
+import bq_standard.StackKey;
+import net.minecraft.inventory.InventoryCrafting;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.crafting.CraftingManager;
+import net.minecraft.world.World;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of crafting results keyed by the contents of the crafting grid (item, damage and NBT per slot).
+ * Saves a scan of the full recipe list every time the shift-click workaround in onItemCrafted needs the real output.
+ * The cache empties itself whenever the recipe list is replaced or changes size.
+ */
+public class RecipeCache
+{
+    public static final RecipeCache INSTANCE = new RecipeCache();
+
+    private static final int MAX_SIZE = 256;
+
+    private final LinkedHashMap<GridKey, ItemStack> cache = new LinkedHashMap<GridKey, ItemStack>(64, 0.75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GridKey, ItemStack> eldest)
+        {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private List<?> recipes = null;
+    private int recipeCount = -1;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Same as CraftingManager.findMatchingRecipe but remembers the result. The returned stack must NOT be modified
+     */
+    @Nullable
+    public ItemStack findMatchingRecipe(@Nonnull InventoryCrafting grid, World world)
+    {
+        List<?> current = CraftingManager.getInstance().getRecipeList();
+
+        if(current != recipes || current.size() != recipeCount)
+        {
+            cache.clear();
+            recipes = current;
+            recipeCount = current.size();
+        }
+
+        GridKey key = new GridKey(grid);
+
+        if(cache.containsKey(key)) // Null is a valid (cached) result
+        {
+            hits++;
+            return cache.get(key);
+        }
+
+        misses++;
+        ItemStack result = CraftingManager.getInstance().findMatchingRecipe(grid, world);
+        if(result != null) result = result.copy();
+        cache.put(key, result);
+        return result;
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    public void reset()
+    {
+        cache.clear();
+        recipes = null;
+        recipeCount = -1;
+        hits = 0;
+        misses = 0;
+    }
+
+    private static class GridKey
+    {
+        private final StackKey[] slots;
+        private final int hash;
+
+        private GridKey(@Nonnull InventoryCrafting grid)
+        {
+            this.slots = new StackKey[grid.getSizeInventory()];
+
+            for(int i = 0; i < slots.length; i++)
+            {
+                ItemStack stack = grid.getStackInSlot(i);
+                slots[i] = stack == null || stack.getItem() == null ? null : new StackKey(stack);
+            }
+
+            this.hash = Arrays.hashCode(slots);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(this == obj) return true;
+            if(!(obj instanceof GridKey)) return false;
+
+            GridKey key = (GridKey)obj;
+            return key.hash == hash && Arrays.equals(key.slots, slots);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package bq_standard.handlers;
+
+import betterquesting.api2.utils.ParticipantInfo;
+import bq_standard.ScoreboardBQ;
+import bq_standard.tasks.TaskScoreboard;
+import net.minecraft.scoreboard.ScoreObjective;
+import net.minecraft.scoreboard.Scoreboard;
+import net.minecraft.server.MinecraftServer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * Shares each player's score for an objective between every scoreboard task that references it. A read stays valid for
+ * a few ticks because the TaskScheduler spreads tasks over different ticks, so tasks rarely run on the same one. Scores
+ * are only copied into ScoreboardBQ (and its lock) when the value actually changed. Server thread only.
+ */
+public class ScoreSnapshot
+{
+    public static final ScoreSnapshot INSTANCE = new ScoreSnapshot();
+
+    private static final int MAX_AGE = 10;
+
+    private final HashMap<String, HashMap<UUID, Reading>> current = new HashMap<>();
+    private final HashMap<String, HashMap<UUID, Integer>> written = new HashMap<>();
+    private int version = -1;
+
+    /**
+     * The player's score for the task's objective as of the last few ticks or null if the objective couldn't be found or created
+     */
+    @Nullable
+    public Integer getScore(@Nonnull ParticipantInfo pInfo, @Nonnull TaskScoreboard task)
+    {
+        int now = getTick();
+
+        if(version != ScoreboardBQ.INSTANCE.getVersion())
+        {
+            written.clear(); // Reset or reloaded since. Everything needs copying over again
+            version = ScoreboardBQ.INSTANCE.getVersion();
+        }
+
+        HashMap<UUID, Reading> scores = current.computeIfAbsent(task.scoreName, (key) -> new HashMap<>());
+        Reading reading = scores.get(pInfo.UUID);
+        if(reading != null && now - reading.tick < MAX_AGE && now >= reading.tick) return reading.points;
+
+        Scoreboard board = pInfo.PLAYER.getWorldScoreboard();
+        ScoreObjective scoreObj = task.getObjective(board);
+        if(scoreObj == null) return null; // Not cached so the next task gets to try creating it
+
+        int points = board.func_96529_a(pInfo.PLAYER.getCommandSenderName(), scoreObj).getScorePoints();
+        scores.put(pInfo.UUID, new Reading(points, now));
+
+        Integer last = written.computeIfAbsent(task.scoreName, (key) -> new HashMap<>()).put(pInfo.UUID, points);
+        if(last == null || last != points) ScoreboardBQ.INSTANCE.setScore(pInfo.UUID, task.scoreName, points);
+
+        return points;
+    }
+
+    public void remove(@Nullable UUID uuid)
+    {
+        if(uuid == null)
+        {
+            current.clear();
+            written.clear();
+        } else
+        {
+            current.values().forEach((scores) -> scores.remove(uuid));
+            written.values().forEach((scores) -> scores.remove(uuid));
+        }
+    }
+
+    private static int getTick()
+    {
+        MinecraftServer server = MinecraftServer.getServer();
+        return server == null ? 0 : server.getTickCounter();
+    }
+
+    private static class Reading
+    {
+        private final int points;
+        private final int tick;
+
+        private Reading(int points, int tick)
+        {
+            this.points = points;
+            this.tick = tick;
+        }
+    }
+}
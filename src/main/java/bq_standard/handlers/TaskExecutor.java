@@ -0,0 +1,87 @@
+package bq_standard.handlers;
+
+import bq_standard.core.BQS_Settings;
+import bq_standard.core.BQ_Standard;
+import org.apache.logging.log4j.Level;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs queued task checks on the server thread within a fixed time budget per tick. Whatever doesn't fit carries over to
+ * the next tick. Player initiated work (clicks and submissions) always goes ahead of background polling and inventory
+ * scans. At least one job runs every tick so nothing can starve regardless of the budget.
+ */
+public class TaskExecutor
+{
+    public static final TaskExecutor INSTANCE = new TaskExecutor();
+
+    private final ConcurrentLinkedQueue<Runnable> priority = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Runnable> background = new ConcurrentLinkedQueue<>();
+    private long used = 0L;
+
+    /**
+     * Queues work a player is actively waiting on. Safe to call from any thread
+     */
+    public void submitPriority(@Nonnull Runnable job)
+    {
+        priority.add(job);
+    }
+
+    /**
+     * Queues polling or detection work that can wait a few ticks. Safe to call from any thread
+     */
+    public void submitBackground(@Nonnull Runnable job)
+    {
+        background.add(job);
+    }
+
+    /**
+     * Counts time already spent this tick running scheduled server tasks (command rewards) against the shared task budget
+     */
+    public void useBudget(long nanos)
+    {
+        used += nanos;
+    }
+
+    /**
+     * Runs queued jobs until the queues are empty or whatever's left of the tick budget is used up. Called once per server tick
+     */
+    public void run()
+    {
+        long deadline = System.nanoTime() + Math.max(0L, BQS_Settings.taskBudget * 1000L - used);
+        used = 0L;
+
+        Runnable job;
+        while((job = next()) != null)
+        {
+            try
+            {
+                job.run();
+            } catch(Exception e)
+            {
+                BQ_Standard.logger.log(Level.ERROR, "Error running quest task check", e);
+            }
+
+            if(System.nanoTime() >= deadline) break;
+        }
+    }
+
+    private Runnable next()
+    {
+        Runnable job = priority.poll();
+        return job != null ? job : background.poll();
+    }
+
+    public int getPending()
+    {
+        return priority.size() + background.size();
+    }
+
+    public void reset()
+    {
+        priority.clear();
+        background.clear();
+        used = 0L;
+    }
+}
@@ -0,0 +1,183 @@
+package bq_standard.handlers;
+
+import betterquesting.api.api.ApiReference;
+import betterquesting.api.api.QuestingAPI;
+import betterquesting.api.questing.IQuest;
+import betterquesting.api.questing.tasks.ITask;
+import betterquesting.api2.storage.DBEntry;
+import betterquesting.api2.utils.ParticipantInfo;
+import betterquesting.api2.utils.Tuple2;
+import bq_standard.tasks.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * Per-player lookup of active (quest, task) pairs grouped by task type so event handlers only visit the tasks that can react to them.
+ * An index is rebuilt whenever the player's shared quest list differs from the one it was built against. Tasks already
+ * complete for the whole party are left out and only come back once the index is rebuilt after a reset.
+ */
+public class TaskIndex
+{
+    public static final TaskIndex INSTANCE = new TaskIndex();
+
+    public static final int INTERACT_ITEM = 1;
+    public static final int INTERACT_ENTITY = 1 << 1;
+    public static final int CRAFTING = 1 << 2;
+    public static final int HUNT = 1 << 3;
+    public static final int BLOCK_BREAK = 1 << 4;
+
+    private final HashMap<UUID, PlayerIndex> indexMap = new HashMap<>();
+
+    @Nonnull
+    public <T> List<Tuple2<DBEntry<IQuest>, T>> getTasks(@Nonnull ParticipantInfo pInfo, @Nonnull Class<T> type)
+    {
+        return getIndex(pInfo).getTasks(type);
+    }
+
+    /**
+     * Returns the tasks of the given type that accept the given key, as decided by the filter. Results are cached per key
+     * until the index is rebuilt so the filter should only depend on the task's configuration and the key itself
+     */
+    @Nonnull
+    public <T, K> List<Tuple2<DBEntry<IQuest>, T>> getTasks(@Nonnull ParticipantInfo pInfo, @Nonnull Class<T> type, @Nonnull K key, @Nonnull BiPredicate<T, K> filter)
+    {
+        return getIndex(pInfo).getTasks(type, key, filter);
+    }
+
+    /**
+     * Whether any of the participant's active tasks listen to the given event category. Lets handlers bail out before doing any work
+     */
+    public boolean hasInterest(@Nonnull ParticipantInfo pInfo, int category)
+    {
+        return (getIndex(pInfo).getInterests() & category) != 0;
+    }
+
+    @Nonnull
+    private PlayerIndex getIndex(@Nonnull ParticipantInfo pInfo)
+    {
+        int[] shared = pInfo.getSharedQuests();
+        PlayerIndex index = indexMap.get(pInfo.UUID);
+
+        if(index == null || (index.questIDs != shared && !Arrays.equals(index.questIDs, shared)))
+        {
+            index = new PlayerIndex(shared, pInfo.ALL_UUIDS);
+            indexMap.put(pInfo.UUID, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Call after handing an event to a task. If that completed it for the whole party, the party's indices are dropped so the
+     * task leaves the dispatch lists
+     */
+    public void checkComplete(@Nonnull ParticipantInfo pInfo, @Nonnull ITask task)
+    {
+        if(isPartyComplete(task, pInfo.ALL_UUIDS)) pInfo.ALL_UUIDS.forEach(indexMap::remove);
+    }
+
+    private static boolean isPartyComplete(@Nonnull ITask task, @Nonnull List<UUID> party)
+    {
+        for(UUID uuid : party)
+        {
+            if(!task.isComplete(uuid)) return false;
+        }
+        
+        return party.size() > 0;
+    }
+
+    public void invalidate(@Nullable UUID uuid)
+    {
+        if(uuid == null)
+        {
+            indexMap.clear();
+        } else
+        {
+            indexMap.remove(uuid);
+        }
+    }
+
+    private static class PlayerIndex
+    {
+        private final int[] questIDs;
+        private final List<UUID> party;
+        private final HashMap<Class<?>, List<? extends Tuple2<DBEntry<IQuest>, ?>>> typeMap = new HashMap<>();
+        private final HashMap<Class<?>, HashMap<Object, List<? extends Tuple2<DBEntry<IQuest>, ?>>>> keyMap = new HashMap<>();
+        private List<DBEntry<IQuest>> quests = null;
+        private int interests = -1;
+
+        private PlayerIndex(int[] questIDs, List<UUID> party)
+        {
+            this.questIDs = questIDs;
+            this.party = new ArrayList<>(party);
+        }
+
+        private int getInterests()
+        {
+            if(interests >= 0) return interests;
+            
+            if(quests == null) quests = QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(questIDs);
+            
+            int mask = 0;
+            for(DBEntry<IQuest> entry : quests)
+            {
+                for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
+                {
+                    ITask value = task.getValue();
+                    if(isPartyComplete(value, party)) continue;
+                    if(value instanceof TaskInteractItem) mask |= INTERACT_ITEM;
+                    if(value instanceof TaskInteractEntity) mask |= INTERACT_ENTITY;
+                    if(value instanceof TaskCrafting) mask |= CRAFTING;
+                    if(value instanceof TaskHunt) mask |= HUNT;
+                    if(value instanceof TaskBlockBreak) mask |= BLOCK_BREAK;
+                }
+            }
+            
+            interests = mask;
+            return interests;
+        }
+        
+        @SuppressWarnings("unchecked")
+        private <T> List<Tuple2<DBEntry<IQuest>, T>> getTasks(Class<T> type)
+        {
+            List<Tuple2<DBEntry<IQuest>, T>> list = (List<Tuple2<DBEntry<IQuest>, T>>)typeMap.get(type);
+            if(list != null) return list;
+
+            if(quests == null) quests = QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(questIDs);
+
+            list = new ArrayList<>();
+            for(DBEntry<IQuest> entry : quests)
+            {
+                for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
+                {
+                    if(type.isInstance(task.getValue()) && !isPartyComplete(task.getValue(), party)) list.add(new Tuple2<>(entry, (T)task.getValue()));
+                }
+            }
+
+            list = list.isEmpty() ? Collections.emptyList() : list;
+            typeMap.put(type, list);
+            return list;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T, K> List<Tuple2<DBEntry<IQuest>, T>> getTasks(Class<T> type, K key, BiPredicate<T, K> filter)
+        {
+            HashMap<Object, List<? extends Tuple2<DBEntry<IQuest>, ?>>> subMap = keyMap.computeIfAbsent(type, (k) -> new HashMap<>());
+            List<Tuple2<DBEntry<IQuest>, T>> list = (List<Tuple2<DBEntry<IQuest>, T>>)subMap.get(key);
+            if(list != null) return list;
+
+            list = new ArrayList<>();
+            for(Tuple2<DBEntry<IQuest>, T> entry : getTasks(type))
+            {
+                if(filter.test(entry.getSecond(), key)) list.add(entry);
+            }
+
+            list = list.isEmpty() ? Collections.emptyList() : list;
+            subMap.put(key, list);
+            return list;
+        }
+    }
+}
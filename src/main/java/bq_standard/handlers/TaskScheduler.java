@@ -0,0 +1,204 @@
+package bq_standard.handlers;
+
+import betterquesting.api.api.ApiReference;
+import betterquesting.api.api.QuestingAPI;
+import betterquesting.api.properties.NativeProps;
+import betterquesting.api.questing.IQuest;
+import betterquesting.api2.storage.DBEntry;
+import betterquesting.api2.utils.ParticipantInfo;
+import betterquesting.api2.utils.Tuple2;
+import bq_standard.tasks.ITaskTickable;
+import net.minecraft.entity.player.EntityPlayer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Hashed timing wheel that queues each player's ITaskTickable tasks on the TaskExecutor at the interval they ask for.
+ * Every (player, task) pair starts at an offset taken from its hash so checks are spread evenly over the interval rather
+ * than every player landing on the same tick. Each player also gets a refresh entry that picks up new tasks, drops removed ones and
+ * re-adds tasks whose completion was reset. Completed tasks leave the wheel until then.
+ */
+public class TaskScheduler
+{
+    public static final TaskScheduler INSTANCE = new TaskScheduler();
+
+    private static final int WHEEL_SIZE = 256; // Must be a power of 2 and no smaller than the longest interval
+    private static final int REFRESH_INTERVAL = 20;
+
+    @SuppressWarnings("unchecked")
+    private final ArrayList<Entry>[] wheel = new ArrayList[WHEEL_SIZE];
+    private final HashMap<UUID, PlayerEntries> playerMap = new HashMap<>();
+    private int tick = 0;
+
+    private TaskScheduler()
+    {
+        for(int i = 0; i < WHEEL_SIZE; i++) wheel[i] = new ArrayList<>();
+    }
+
+    /**
+     * Starts ticking tasks for this player or points the existing entries at a new player instance (respawn or dimension change)
+     */
+    public void addPlayer(@Nonnull EntityPlayer player)
+    {
+        UUID uuid = QuestingAPI.getQuestingUUID(player);
+        PlayerEntries entries = playerMap.get(uuid);
+
+        if(entries != null)
+        {
+            entries.player = player;
+            return;
+        }
+
+        entries = new PlayerEntries(player);
+        playerMap.put(uuid, entries);
+        schedule(new Entry(entries, null, null, REFRESH_INTERVAL), uuid.hashCode());
+    }
+
+    public void removePlayer(@Nullable UUID uuid)
+    {
+        if(uuid == null)
+        {
+            playerMap.values().forEach((entries) -> entries.removed = true);
+            playerMap.clear();
+            for(ArrayList<Entry> list : wheel) list.clear();
+        } else
+        {
+            PlayerEntries entries = playerMap.remove(uuid);
+            if(entries != null) entries.removed = true;
+        }
+    }
+
+    /**
+     * Runs everything due this tick. Called once per server tick
+     */
+    public void tick()
+    {
+        ArrayList<Entry> due = wheel[tick & (WHEEL_SIZE - 1)];
+        tick++;
+
+        if(due.isEmpty()) return;
+
+        wheel[(tick - 1) & (WHEEL_SIZE - 1)] = new ArrayList<>();
+        boolean editMode = QuestingAPI.getAPI(ApiReference.SETTINGS).getProperty(NativeProps.EDIT_MODE);
+
+        for(Entry entry : due)
+        {
+            if(entry.cancelled || entry.owner.removed) continue;
+            reschedule(entry);
+
+            if(editMode)
+            {
+                continue;
+            } else if(entry.task == null)
+            {
+                refresh(entry.owner, ParticipantCache.INSTANCE.get(entry.owner.player));
+            } else if(!entry.queued) // Still waiting from last time if the executor is behind. No point queuing it twice
+            {
+                entry.queued = true;
+                TaskExecutor.INSTANCE.submitBackground(() -> runTask(entry));
+            }
+        }
+    }
+
+    private void runTask(@Nonnull Entry entry)
+    {
+        entry.queued = false;
+        if(entry.cancelled || entry.owner.removed || QuestingAPI.getAPI(ApiReference.SETTINGS).getProperty(NativeProps.EDIT_MODE)) return;
+
+        ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(entry.owner.player);
+        entry.task.tickTask(pInfo, entry.quest);
+
+        if(entry.task.isComplete(pInfo.UUID))
+        {
+            entry.cancelled = true;
+            entry.owner.scheduled.remove(entry.task);
+            TaskIndex.INSTANCE.checkComplete(pInfo, entry.task);
+        }
+    }
+
+    private void refresh(@Nonnull PlayerEntries owner, @Nonnull ParticipantInfo pInfo)
+    {
+        List<Tuple2<DBEntry<IQuest>, ITaskTickable>> tasks = TaskIndex.INSTANCE.getTasks(pInfo, ITaskTickable.class);
+
+        if(tasks != owner.indexed) // The index was rebuilt. Drop anything no longer active
+        {
+            Set<ITaskTickable> active = Collections.newSetFromMap(new IdentityHashMap<>());
+            tasks.forEach((entry) -> active.add(entry.getSecond()));
+
+            Iterator<Map.Entry<ITaskTickable, Entry>> iter = owner.scheduled.entrySet().iterator();
+            while(iter.hasNext())
+            {
+                Map.Entry<ITaskTickable, Entry> scheduled = iter.next();
+                if(active.contains(scheduled.getKey())) continue;
+                scheduled.getValue().cancelled = true;
+                iter.remove();
+            }
+
+            owner.indexed = tasks;
+        }
+
+        for(Tuple2<DBEntry<IQuest>, ITaskTickable> entry : tasks)
+        {
+            ITaskTickable task = entry.getSecond();
+            Entry scheduled = owner.scheduled.get(task);
+
+            if(scheduled != null && task.getTickInterval() <= 0) // Reconfigured since it was scheduled
+            {
+                scheduled.cancelled = true;
+                owner.scheduled.remove(task);
+            } else if(scheduled != null)
+            {
+                scheduled.quest = entry.getFirst();
+            } else if(!task.isComplete(pInfo.UUID) && task.getTickInterval() > 0)
+            {
+                scheduled = new Entry(owner, entry.getFirst(), task, task.getTickInterval());
+                owner.scheduled.put(task, scheduled);
+                schedule(scheduled, 31 * pInfo.UUID.hashCode() + System.identityHashCode(task));
+            }
+        }
+    }
+
+    private void schedule(@Nonnull Entry entry, int hash)
+    {
+        int offset = 1 + Math.floorMod(hash, entry.interval);
+        wheel[(tick + offset - 1) & (WHEEL_SIZE - 1)].add(entry);
+    }
+
+    private void reschedule(@Nonnull Entry entry)
+    {
+        wheel[(tick + entry.interval - 1) & (WHEEL_SIZE - 1)].add(entry);
+    }
+
+    private static class PlayerEntries
+    {
+        private EntityPlayer player;
+        private boolean removed = false;
+        private List<Tuple2<DBEntry<IQuest>, ITaskTickable>> indexed = null;
+        private final IdentityHashMap<ITaskTickable, Entry> scheduled = new IdentityHashMap<>();
+
+        private PlayerEntries(@Nonnull EntityPlayer player)
+        {
+            this.player = player;
+        }
+    }
+
+    private static class Entry
+    {
+        private final PlayerEntries owner;
+        private final ITaskTickable task; // Null for the player's refresh entry
+        private final int interval;
+        private DBEntry<IQuest> quest;
+        private boolean cancelled = false;
+        private boolean queued = false;
+
+        private Entry(@Nonnull PlayerEntries owner, @Nullable DBEntry<IQuest> quest, @Nullable ITaskTickable task, int interval)
+        {
+            this.owner = owner;
+            this.quest = quest;
+            this.task = task;
+            this.interval = Math.max(1, Math.min(WHEEL_SIZE, interval));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package bq_standard.handlers;
+
+import betterquesting.api.api.ApiReference;
+import betterquesting.api.api.QuestingAPI;
+import betterquesting.api.properties.NativeProps;
+import betterquesting.api.questing.IQuest;
+import betterquesting.api2.storage.DBEntry;
+import betterquesting.api2.utils.ParticipantInfo;
+import betterquesting.api2.utils.Tuple2;
+import bq_standard.tasks.TaskXP;
+import net.minecraft.entity.player.EntityPlayer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+/**
+ * Pushes experience changes to TaskXP instead of having every task poll every player. Orb pickups and XPHelper.addXP
+ * mark the player and their XP tasks are updated once at the end of the tick. Anything that changes XP without going
+ * through either (enchanting, anvils, commands, death) is left to the slow tickTask safety net on the TaskScheduler.
+ */
+public class XPTracker
+{
+    public static final XPTracker INSTANCE = new XPTracker();
+
+    private final LinkedHashMap<UUID, EntityPlayer> changed = new LinkedHashMap<>();
+
+    public void markChanged(@Nonnull EntityPlayer player)
+    {
+        if(player.worldObj == null || player.worldObj.isRemote) return;
+        changed.put(QuestingAPI.getQuestingUUID(player), player);
+    }
+
+    /**
+     * Updates the XP tasks of players marked since the last call. Called once at the end of each server tick
+     */
+    public void tick()
+    {
+        if(changed.isEmpty()) return;
+
+        EntityPlayer[] players = changed.values().toArray(new EntityPlayer[0]);
+        changed.clear();
+
+        if(QuestingAPI.getAPI(ApiReference.SETTINGS).getProperty(NativeProps.EDIT_MODE)) return;
+
+        for(EntityPlayer player : players)
+        {
+            ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(player);
+
+            for(Tuple2<DBEntry<IQuest>, TaskXP> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskXP.class))
+            {
+                entry.getSecond().onXPChange(pInfo, entry.getFirst());
+                TaskIndex.INSTANCE.checkComplete(pInfo, entry.getSecond());
+            }
+        }
+    }
+
+    public void remove(@Nullable UUID uuid)
+    {
+        if(uuid == null)
+        {
+            changed.clear();
+        } else
+        {
+            changed.remove(uuid);
+        }
+    }
+}
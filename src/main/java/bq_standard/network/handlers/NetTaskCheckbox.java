@@ -7,6 +7,7 @@ import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.tasks.ITask;
 import betterquesting.api2.cache.QuestCache;
 import betterquesting.api2.utils.Tuple2;
+import bq_standard.handlers.TaskExecutor;
 import bq_standard.tasks.TaskCheckbox;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
@@ -48,8 +49,10 @@ public class NetTaskCheckbox
             
             if(task instanceof TaskCheckbox)
             {
-                task.setComplete(QuestingAPI.getQuestingUUID(sender));
-                if(qc != null) qc.markQuestDirty(qId);
+                TaskExecutor.INSTANCE.submitPriority(() -> {
+                    task.setComplete(QuestingAPI.getQuestingUUID(sender));
+                    if(qc != null) qc.markQuestDirty(qId);
+                });
             }
 		}
 	}
@@ -4,20 +4,20 @@ import betterquesting.api.api.ApiReference;
 import betterquesting.api.api.QuestingAPI;
 import betterquesting.api.network.QuestingPacket;
 import betterquesting.api.questing.IQuest;
-import betterquesting.api.questing.tasks.ITask;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
 import betterquesting.api2.utils.Tuple2;
+import bq_standard.LazyNBT;
+import bq_standard.handlers.ParticipantCache;
+import bq_standard.handlers.TaskExecutor;
+import bq_standard.handlers.TaskIndex;
 import bq_standard.tasks.TaskInteractItem;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.util.MathHelper;
 import net.minecraft.util.ResourceLocation;
 
-import java.util.List;
-
 public class NetTaskInteract
 {
 	private static final ResourceLocation ID_NAME = new ResourceLocation("bq_standard:task_interact");
@@ -40,17 +40,16 @@ public class NetTaskInteract
 	    EntityPlayerMP sender = message.getSecond();
 	    NBTTagCompound tag = message.getFirst();
         
-        ParticipantInfo pInfo = new ParticipantInfo(sender);
-		List<DBEntry<IQuest>> actQuest = QuestingAPI.getAPI(ApiReference.QUEST_DB).bulkLookup(pInfo.getSharedQuests());
-        
         boolean isHit = tag.getBoolean("isHit");
-		
-		for(DBEntry<IQuest> entry : actQuest)
-		{
-		    for(DBEntry<ITask> task : entry.getValue().getTasks().getEntries())
+        
+        TaskExecutor.INSTANCE.submitPriority(() -> {
+            ParticipantInfo pInfo = ParticipantCache.INSTANCE.get(sender);
+            
+            for(Tuple2<DBEntry<IQuest>, TaskInteractItem> entry : TaskIndex.INSTANCE.getTasks(pInfo, TaskInteractItem.class))
             {
-                if(task.getValue() instanceof TaskInteractItem) ((TaskInteractItem)task.getValue()).onInteract(pInfo, entry, null, null, -1, MathHelper.floor_double(sender.posX), MathHelper.floor_double(sender.posY), MathHelper.floor_double(sender.posZ), isHit);
+                entry.getSecond().onInteract(pInfo, entry.getFirst(), null, null, -1, LazyNBT.NONE, isHit);
+                TaskIndex.INSTANCE.checkComplete(pInfo, entry.getSecond());
             }
-		}
+        });
     }
 }
@@ -12,6 +12,7 @@ import bq_standard.NBTReplaceUtil;
 import bq_standard.client.gui.rewards.PanelRewardChoice;
 import bq_standard.core.BQ_Standard;
 import bq_standard.rewards.factory.FactoryRewardChoice;
+import bq_standard.tasks.IntProgressStore;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import net.minecraft.client.gui.GuiScreen;
@@ -31,7 +32,7 @@ public class RewardChoice implements IReward
 	 * Should only ever be used client side. NEVER onHit server
 	 */
 	public final List<BigItemStack> choices = new ArrayList<>();
-	private final TreeMap<UUID,Integer> selected = new TreeMap<>();
+	private final IntProgressStore selected = new IntProgressStore(); // Keyed by UUIDRegistry index
 	
 	@Override
 	public ResourceLocation getFactoryID()
@@ -47,7 +48,7 @@ public class RewardChoice implements IReward
 	
 	public int getSelecton(UUID uuid)
 	{
-		if(!selected.containsKey(uuid))
+		if(!selected.hasProgress(uuid))
 		{
 			return -1;
 		}
@@ -57,15 +58,16 @@ public class RewardChoice implements IReward
 	
 	public void setSelection(UUID uuid, int value)
 	{
-		selected.put(uuid, value);
+		selected.set(uuid, value);
 	}
 	
 	@Override
 	public boolean canClaim(EntityPlayer player, DBEntry<IQuest> quest)
 	{
-		if(!selected.containsKey(QuestingAPI.getQuestingUUID(player))) return false;
+		UUID playerID = QuestingAPI.getQuestingUUID(player);
+		if(!selected.hasProgress(playerID)) return false;
 		
-		int tmp = selected.get(QuestingAPI.getQuestingUUID(player));
+		int tmp = selected.get(playerID);
 		return choices.size() <= 0 || (tmp >= 0 && tmp < choices.size());
 	}
 
@@ -77,7 +79,7 @@ public class RewardChoice implements IReward
 		if(choices.size() <= 0)
 		{
 			return;
-		} else if(!selected.containsKey(playerID))
+		} else if(!selected.hasProgress(playerID))
 		{
 			return;
 		}
@@ -6,8 +6,13 @@ import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.BitSet;
 
 public interface ITaskInventory extends ITask
 {
-    void onInventoryChange(@Nonnull DBEntry<IQuest> quest, @Nonnull ParticipantInfo pInfo);
+    /**
+     * @param changedSlots Indices of the player inventory slots changed since the last update or null if everything should be considered changed
+     */
+    void onInventoryChange(@Nonnull DBEntry<IQuest> quest, @Nonnull ParticipantInfo pInfo, @Nullable BitSet changedSlots);
 }
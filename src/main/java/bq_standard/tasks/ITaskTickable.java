@@ -10,4 +10,9 @@ import javax.annotation.Nonnull;
 public interface ITaskTickable extends ITask
 {
     void tickTask(@Nonnull ParticipantInfo pInfo, @Nonnull DBEntry<IQuest> quest);
+    
+    /**
+     * Number of ticks between calls to tickTask for the same player. Zero or less leaves the task off the schedule
+     */
+    int getTickInterval();
 }
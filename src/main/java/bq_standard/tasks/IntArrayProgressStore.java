@@ -0,0 +1,139 @@
+package bq_standard.tasks;
+
+import betterquesting.api.utils.NBTConverter;
+import bq_standard.core.BQ_Standard;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTBase.NBTPrimitive;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import org.apache.logging.log4j.Level;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * A ProgressStore holding an array of counters per user (one per required item, block or fluid). Arrays are stored as
+ * given and returned as is so callers can keep updating them in place
+ */
+public class IntArrayProgressStore extends ProgressStore
+{
+    private int[][] values = new int[0][];
+
+    @Nullable
+    public int[] get(@Nonnull UUID uuid)
+    {
+        int slot = findSlot(uuid);
+        return slot < 0 ? null : values[slot];
+    }
+
+    public void set(@Nonnull UUID uuid, @Nonnull int[] value)
+    {
+        int slot = addSlot(uuid);
+        values[slot] = value;
+    }
+
+    /**
+     * Reads completed users and per-user counters, padding or trimming each user's counters to the given size. Counters
+     * may be an int array or the legacy list of int tags
+     */
+    public void readFromNBT(@Nonnull NBTTagCompound nbt, int size)
+    {
+        readCompleteFromNBT(nbt);
+
+        NBTTagList pList = nbt.getTagList("userProgress", 10);
+        for(int n = 0; n < pList.tagCount(); n++)
+        {
+            try
+            {
+                NBTTagCompound pTag = pList.getCompoundTagAt(n);
+                UUID uuid = readUUID(pTag);
+                int[] data;
+
+                if(pTag.func_150299_b("data") == 11)
+                {
+                    data = Arrays.copyOf(pTag.getIntArray("data"), size);
+                } else
+                {
+                    data = new int[size];
+                    List<NBTBase> dNbt = NBTConverter.getTagList(pTag.getTagList("data", 3));
+                    for(int i = 0; i < data.length && i < dNbt.size(); i++)
+                    {
+                        data[i] = ((NBTPrimitive)dNbt.get(i)).func_150287_d();
+                    }
+                }
+
+                set(uuid, data);
+            } catch(Exception e)
+            {
+                BQ_Standard.logger.log(Level.ERROR, "Unable to load user progress for task", e);
+            }
+        }
+    }
+
+    /**
+     * Writes completed users and the counters of everyone (or only the given users) with progress
+     */
+    @Nonnull
+    public NBTTagCompound writeToNBT(@Nonnull NBTTagCompound nbt, @Nullable List<UUID> users)
+    {
+        writeCompleteToNBT(nbt, users);
+
+        NBTTagList progArray = new NBTTagList();
+
+        if(users != null)
+        {
+            users.forEach((uuid) -> {
+                int[] data = get(uuid);
+                if(data != null) progArray.appendTag(writeEntry(uuid, data));
+            });
+        } else
+        {
+            forEach((uuid, data) -> progArray.appendTag(writeEntry(uuid, data)));
+        }
+
+        nbt.setTag("userProgress", progArray);
+        return nbt;
+    }
+
+    private static NBTTagCompound writeEntry(@Nonnull UUID uuid, @Nonnull int[] data)
+    {
+        NBTTagCompound pJson = new NBTTagCompound();
+        writeUUID(pJson, uuid);
+        pJson.setTag("data", new NBTTagIntArray(data.clone())); // Stored arrays keep being updated in place
+        return pJson;
+    }
+
+    public void forEach(@Nonnull BiConsumer<UUID, int[]> action)
+    {
+        forEachSlot((uuid, slot) -> action.accept(uuid, values[slot]));
+    }
+
+    @Override
+    protected void rehash(int capacity, @Nonnull int[] moves)
+    {
+        int[][] old = values;
+        values = new int[capacity][];
+
+        for(int i = 0; i < moves.length; i++)
+        {
+            if(moves[i] >= 0) values[moves[i]] = old[i];
+        }
+    }
+
+    @Override
+    protected void move(int from, int to)
+    {
+        values[to] = values[from];
+    }
+
+    @Override
+    protected void clear(int slot)
+    {
+        values[slot] = null;
+    }
+}
@@ -0,0 +1,54 @@
+package bq_standard.tasks;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A ProgressStore holding a single counter per user
+ */
+public class IntProgressStore extends ProgressStore
+{
+    private int[] values = new int[0];
+
+    public int get(@Nonnull UUID uuid)
+    {
+        int slot = findSlot(uuid);
+        return slot < 0 ? 0 : values[slot];
+    }
+
+    public void set(@Nonnull UUID uuid, int value)
+    {
+        int slot = addSlot(uuid);
+        values[slot] = value;
+    }
+
+    public void forEach(@Nonnull ObjIntConsumer<UUID> action)
+    {
+        forEachSlot((uuid, slot) -> action.accept(uuid, values[slot]));
+    }
+
+    @Override
+    protected void rehash(int capacity, @Nonnull int[] moves)
+    {
+        int[] old = values;
+        values = new int[capacity];
+
+        for(int i = 0; i < moves.length; i++)
+        {
+            if(moves[i] >= 0) values[moves[i]] = old[i];
+        }
+    }
+
+    @Override
+    protected void move(int from, int to)
+    {
+        values[to] = values[from];
+    }
+
+    @Override
+    protected void clear(int slot)
+    {
+        values[slot] = 0;
+    }
+}
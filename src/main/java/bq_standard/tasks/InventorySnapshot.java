@@ -0,0 +1,137 @@
+package bq_standard.tasks;
+
+import betterquesting.api.api.QuestingAPI;
+import bq_standard.StackKey;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.InventoryPlayer;
+import net.minecraft.item.ItemStack;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Shared record of what each player's inventory slots held when they were last checked along with the total count of
+ * every distinct stack. Slots are compared by item, damage, NBT and count so only the slots that actually changed are
+ * re-keyed and the totals are adjusted in place. Every change takes a new version number.
+ */
+public class InventorySnapshot
+{
+    private static final HashMap<UUID, InventorySnapshot> SNAPSHOTS = new HashMap<>();
+    private static int versionCounter = 0;
+
+    @Nonnull
+    public static InventorySnapshot get(@Nonnull EntityPlayer player)
+    {
+        UUID uuid = QuestingAPI.getQuestingUUID(player);
+        InventorySnapshot snapshot = SNAPSHOTS.get(uuid);
+
+        if(snapshot == null || snapshot.inventory != player.inventory)
+        {
+            snapshot = new InventorySnapshot(player.inventory);
+            SNAPSHOTS.put(uuid, snapshot);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Brings the player's snapshot up to date
+     * @param changedSlots Slots known to have changed since the last update. Null compares every slot
+     */
+    public static void update(@Nonnull EntityPlayer player, @Nullable BitSet changedSlots)
+    {
+        InventorySnapshot snapshot = get(player);
+
+        if(changedSlots == null)
+        {
+            for(int i = 0; i < snapshot.keys.length; i++) snapshot.updateSlot(i);
+        } else
+        {
+            for(int i = changedSlots.nextSetBit(0); i >= 0 && i < snapshot.keys.length; i = changedSlots.nextSetBit(i + 1))
+            {
+                snapshot.updateSlot(i);
+            }
+        }
+    }
+
+    public static void remove(@Nullable UUID uuid)
+    {
+        if(uuid == null)
+        {
+            SNAPSHOTS.clear();
+        } else
+        {
+            SNAPSHOTS.remove(uuid);
+        }
+    }
+
+    private final InventoryPlayer inventory;
+    private final StackKey[] keys;
+    private final int[] counts;
+    private final LinkedHashMap<StackKey, Integer> totals = new LinkedHashMap<>();
+    private int version;
+
+    private InventorySnapshot(@Nonnull InventoryPlayer inventory)
+    {
+        this.inventory = inventory;
+        this.keys = new StackKey[inventory.getSizeInventory()];
+        this.counts = new int[keys.length];
+        this.version = ++versionCounter;
+
+        for(int i = 0; i < keys.length; i++) updateSlot(i);
+    }
+
+    private void updateSlot(int slot)
+    {
+        ItemStack stack = inventory.getStackInSlot(slot);
+        if(stack != null && (stack.stackSize <= 0 || stack.getItem() == null)) stack = null;
+
+        StackKey key = keys[slot];
+
+        if(key != null && key.matches(stack))
+        {
+            if(counts[slot] == stack.stackSize) return;
+            addTotal(key, stack.stackSize - counts[slot]);
+            counts[slot] = stack.stackSize;
+        } else if(key != null || stack != null)
+        {
+            if(key != null) addTotal(key, -counts[slot]);
+            keys[slot] = stack == null ? null : new StackKey(stack);
+            counts[slot] = stack == null ? 0 : stack.stackSize;
+            if(stack != null) addTotal(keys[slot], counts[slot]);
+        } else
+        {
+            return;
+        }
+
+        version = ++versionCounter;
+    }
+
+    private void addTotal(StackKey key, int amount)
+    {
+        int total = totals.getOrDefault(key, 0) + amount;
+
+        if(total <= 0)
+        {
+            totals.remove(key);
+        } else
+        {
+            totals.put(key, total);
+        }
+    }
+
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Total item count per distinct stack, in the order they first appeared
+     */
+    @Nonnull
+    public Map<StackKey, Integer> getTotals()
+    {
+        return Collections.unmodifiableMap(totals);
+    }
+}
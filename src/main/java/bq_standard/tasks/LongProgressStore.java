@@ -0,0 +1,54 @@
+package bq_standard.tasks;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A ProgressStore holding a single long counter per user
+ */
+public class LongProgressStore extends ProgressStore
+{
+    private long[] values = new long[0];
+
+    public long get(@Nonnull UUID uuid)
+    {
+        int slot = findSlot(uuid);
+        return slot < 0 ? 0 : values[slot];
+    }
+
+    public void set(@Nonnull UUID uuid, long value)
+    {
+        int slot = addSlot(uuid);
+        values[slot] = value;
+    }
+
+    public void forEach(@Nonnull ObjLongConsumer<UUID> action)
+    {
+        forEachSlot((uuid, slot) -> action.accept(uuid, values[slot]));
+    }
+
+    @Override
+    protected void rehash(int capacity, @Nonnull int[] moves)
+    {
+        long[] old = values;
+        values = new long[capacity];
+
+        for(int i = 0; i < moves.length; i++)
+        {
+            if(moves[i] >= 0) values[moves[i]] = old[i];
+        }
+    }
+
+    @Override
+    protected void move(int from, int to)
+    {
+        values[to] = values[from];
+    }
+
+    @Override
+    protected void clear(int slot)
+    {
+        values[slot] = 0;
+    }
+}
@@ -0,0 +1,140 @@
+package bq_standard.tasks;
+
+import betterquesting.api2.utils.ParticipantInfo;
+import bq_standard.StackKey;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraftforge.fluids.FluidStack;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Combined contents of every online party member's inventory, counted per distinct stack and per distinct fluid.
+ * Built from the members' snapshots and shared by every detect-mode task until one of those snapshots changes, so a
+ * task's work scales with the number of distinct items rather than slots x members.
+ */
+public class PartyInventory
+{
+    private static final HashMap<List<UUID>, PartyInventory> CACHE = new HashMap<>();
+    private static int stampCounter = 0;
+
+    /**
+     * The combined inventory of the participant's party
+     * @param refresh Compares every slot of every member first instead of relying on their last reported changes
+     */
+    @Nonnull
+    public static PartyInventory get(@Nonnull ParticipantInfo pInfo, boolean refresh)
+    {
+        InventorySnapshot[] members = new InventorySnapshot[pInfo.ACTIVE_PLAYERS.size()];
+
+        for(int i = 0; i < members.length; i++)
+        {
+            EntityPlayer player = pInfo.ACTIVE_PLAYERS.get(i);
+            if(refresh) InventorySnapshot.update(player, null);
+            members[i] = InventorySnapshot.get(player);
+        }
+
+        PartyInventory party = CACHE.get(pInfo.ALL_UUIDS);
+
+        if(party == null || !party.isCurrent(members))
+        {
+            party = new PartyInventory(members);
+            CACHE.put(new ArrayList<>(pInfo.ALL_UUIDS), party);
+        }
+
+        return party;
+    }
+
+    public static void invalidate(@Nullable UUID uuid)
+    {
+        if(uuid == null)
+        {
+            CACHE.clear();
+        } else
+        {
+            CACHE.keySet().removeIf((key) -> key.contains(uuid));
+        }
+    }
+
+    /**
+     * Unique to this particular set of contents. If a task sees the same stamp twice nothing has changed in between
+     */
+    public final int stamp = ++stampCounter;
+
+    private final InventorySnapshot[] members;
+    private final int[] versions;
+    private final LinkedHashMap<StackKey, Integer> items = new LinkedHashMap<>();
+    private List<FluidStack> fluids = null;
+
+    private PartyInventory(@Nonnull InventorySnapshot[] members)
+    {
+        this.members = members;
+        this.versions = new int[members.length];
+
+        for(int i = 0; i < members.length; i++)
+        {
+            versions[i] = members[i].getVersion();
+            members[i].getTotals().forEach((key, count) -> items.merge(key, count, PartyInventory::addSaturated));
+        }
+    }
+
+    private boolean isCurrent(InventorySnapshot[] current)
+    {
+        if(current.length != members.length) return false;
+
+        for(int i = 0; i < members.length; i++)
+        {
+            if(current[i] != members[i] || current[i].getVersion() != versions[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Total count of each distinct stack across all members
+     */
+    @Nonnull
+    public Map<StackKey, Integer> getItems()
+    {
+        return Collections.unmodifiableMap(items);
+    }
+
+    /**
+     * Total amount of each distinct fluid (type and NBT) held in containers across all members
+     */
+    @Nonnull
+    public List<FluidStack> getFluids()
+    {
+        if(fluids != null) return fluids;
+
+        List<FluidStack> list = new ArrayList<>();
+
+        topLoop:
+        for(Map.Entry<StackKey, Integer> entry : items.entrySet())
+        {
+            FluidStack fluid = entry.getKey().getFluid();
+            if(fluid == null || fluid.amount <= 0) continue;
+            int amount = (int)Math.min(Integer.MAX_VALUE, (long)fluid.amount * entry.getValue());
+
+            for(FluidStack total : list)
+            {
+                if(!total.isFluidEqual(fluid)) continue;
+                total.amount = addSaturated(total.amount, amount);
+                continue topLoop;
+            }
+
+            FluidStack total = fluid.copy();
+            total.amount = amount;
+            list.add(total);
+        }
+
+        fluids = Collections.unmodifiableList(list);
+        return fluids;
+    }
+
+    private static int addSaturated(int a, int b)
+    {
+        return (int)Math.min(Integer.MAX_VALUE, (long)a + b);
+    }
+}
@@ -0,0 +1,277 @@
+package bq_standard.tasks;
+
+import bq_standard.UUIDRegistry;
+import bq_standard.core.BQ_Standard;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import org.apache.logging.log4j.Level;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Completion and progress storage shared by every task. Players are interned to int indices through the UUIDRegistry so
+ * completion is a bitmap and the users with progress are held in an open addressed table of primitive keys rather than
+ * tree nodes holding their own UUIDs. This class only tracks completion. Subclasses add a value per table slot.
+ */
+public class ProgressStore
+{
+    private static final int[] NO_KEYS = new int[0];
+
+    private final BitSet complete = new BitSet();
+    private int[] keys = NO_KEYS; // Player index + 1. Zero marks an empty slot
+    private int size = 0;
+
+    public boolean isComplete(@Nonnull UUID uuid)
+    {
+        int index = UUIDRegistry.INSTANCE.findIndex(uuid);
+        return index >= 0 && complete.get(index);
+    }
+
+    public void setComplete(@Nonnull UUID uuid)
+    {
+        complete.set(UUIDRegistry.INSTANCE.getIndex(uuid));
+    }
+
+    public void forEachComplete(@Nonnull Consumer<UUID> action)
+    {
+        for(int i = complete.nextSetBit(0); i >= 0; i = complete.nextSetBit(i + 1))
+        {
+            action.accept(UUIDRegistry.INSTANCE.getUUID(i));
+        }
+    }
+
+    /**
+     * Reads completed users from either the packed int array (four ints per UUID) or the legacy list of UUID strings
+     */
+    public void readCompleteFromNBT(@Nonnull NBTTagCompound nbt)
+    {
+        if(nbt.func_150299_b("completeUsers") == 11)
+        {
+            int[] data = nbt.getIntArray("completeUsers");
+
+            for(int i = 0; i + 3 < data.length; i += 4)
+            {
+                setComplete(UUIDRegistry.unpack(data, i));
+            }
+
+            return;
+        }
+
+        NBTTagList cList = nbt.getTagList("completeUsers", 8);
+        for(int i = 0; i < cList.tagCount(); i++)
+        {
+            try
+            {
+                setComplete(UUID.fromString(cList.getStringTagAt(i)));
+            } catch(Exception e)
+            {
+                BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
+            }
+        }
+    }
+
+    /**
+     * Runs the action for each completed user in the given subset, or for all of them if null. Subsets are checked
+     * against the completion bitmap rather than searched for each completed user
+     */
+    public void forEachComplete(@Nullable List<UUID> users, @Nonnull Consumer<UUID> action)
+    {
+        if(users == null)
+        {
+            forEachComplete(action);
+            return;
+        }
+
+        users.forEach((uuid) -> {
+            if(isComplete(uuid)) action.accept(uuid);
+        });
+    }
+
+    /**
+     * Writes the completed users (or those of them in the given subset) as a packed int array of four ints per UUID
+     */
+    public void writeCompleteToNBT(@Nonnull NBTTagCompound nbt, @Nullable List<UUID> users)
+    {
+        List<UUID> list = new ArrayList<>();
+        forEachComplete(users, list::add);
+        nbt.setTag("completeUsers", new NBTTagIntArray(UUIDRegistry.pack(list)));
+    }
+
+    /**
+     * Reads a user's UUID from a progress entry. Accepts both the pair of longs and the legacy string
+     */
+    @Nonnull
+    protected static UUID readUUID(@Nonnull NBTTagCompound tag)
+    {
+        if(tag.hasKey("uuidMost", 4)) return new UUID(tag.getLong("uuidMost"), tag.getLong("uuidLeast"));
+        return UUID.fromString(tag.getString("uuid"));
+    }
+
+    protected static void writeUUID(@Nonnull NBTTagCompound tag, @Nonnull UUID uuid)
+    {
+        tag.setLong("uuidMost", uuid.getMostSignificantBits());
+        tag.setLong("uuidLeast", uuid.getLeastSignificantBits());
+    }
+
+    public boolean hasProgress(@Nonnull UUID uuid)
+    {
+        return findSlot(uuid) >= 0;
+    }
+
+    /**
+     * Clears the completion and progress of the given user or everyone if null
+     */
+    public void reset(@Nullable UUID uuid)
+    {
+        if(uuid == null)
+        {
+            complete.clear();
+            keys = NO_KEYS;
+            size = 0;
+            rehash(0, NO_KEYS);
+            return;
+        }
+
+        int index = UUIDRegistry.INSTANCE.findIndex(uuid);
+        if(index < 0) return;
+
+        complete.clear(index);
+        removeSlot(index);
+    }
+
+    protected final int findSlot(@Nonnull UUID uuid)
+    {
+        int index = UUIDRegistry.INSTANCE.findIndex(uuid);
+        return index < 0 ? -1 : findSlot(index);
+    }
+
+    /**
+     * Finds the slot for the given user, adding an empty one if they don't have one yet. May rehash the value arrays so
+     * subclasses must only read their arrays after this returns
+     */
+    protected final int addSlot(@Nonnull UUID uuid)
+    {
+        int index = UUIDRegistry.INSTANCE.getIndex(uuid);
+        int slot = findSlot(index);
+        if(slot >= 0) return slot;
+
+        if((size + 1) * 4 > keys.length * 3) grow();
+
+        int mask = keys.length - 1;
+        slot = mix(index) & mask;
+        while(keys[slot] != 0) slot = (slot + 1) & mask;
+
+        keys[slot] = index + 1;
+        size++;
+        return slot;
+    }
+
+    protected final void forEachSlot(@Nonnull ObjIntConsumer<UUID> action)
+    {
+        int[] array = keys;
+
+        for(int slot = 0; slot < array.length; slot++)
+        {
+            if(array[slot] != 0) action.accept(UUIDRegistry.INSTANCE.getUUID(array[slot] - 1), slot);
+        }
+    }
+
+    /**
+     * Moves the values to a table of the given capacity. moves holds the new slot for each old one or -1 if it was empty
+     */
+    protected void rehash(int capacity, @Nonnull int[] moves)
+    {
+    }
+
+    /**
+     * Copies the value in one slot to another
+     */
+    protected void move(int from, int to)
+    {
+    }
+
+    /**
+     * Clears the value of a slot that's been emptied
+     */
+    protected void clear(int slot)
+    {
+    }
+
+    private int findSlot(int index)
+    {
+        if(size <= 0) return -1;
+
+        int mask = keys.length - 1;
+        int key = index + 1;
+
+        for(int slot = mix(index) & mask; keys[slot] != 0; slot = (slot + 1) & mask)
+        {
+            if(keys[slot] == key) return slot;
+        }
+
+        return -1;
+    }
+
+    private void grow()
+    {
+        int[] old = keys;
+        int[] moves = new int[old.length];
+        keys = new int[old.length <= 0 ? 8 : old.length * 2];
+        int mask = keys.length - 1;
+
+        for(int i = 0; i < old.length; i++)
+        {
+            if(old[i] == 0)
+            {
+                moves[i] = -1;
+                continue;
+            }
+
+            int slot = mix(old[i] - 1) & mask;
+            while(keys[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = old[i];
+            moves[i] = slot;
+        }
+
+        rehash(keys.length, moves);
+    }
+
+    private void removeSlot(int index)
+    {
+        int hole = findSlot(index);
+        if(hole < 0) return;
+
+        int mask = keys.length - 1;
+        keys[hole] = 0;
+
+        // Shift back any entries that probed past the hole so lookups don't stop early
+        for(int slot = (hole + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask)
+        {
+            int ideal = mix(keys[slot] - 1) & mask;
+            boolean stays = hole <= slot ? (hole < ideal && ideal <= slot) : (hole < ideal || ideal <= slot);
+            if(stays) continue;
+
+            keys[hole] = keys[slot];
+            keys[slot] = 0;
+            move(slot, hole);
+            hole = slot;
+        }
+
+        clear(hole);
+        size--;
+    }
+
+    private static int mix(int index)
+    {
+        int h = index * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -2,29 +2,23 @@ package bq_standard.tasks;
 
 import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.tasks.ITask;
-import betterquesting.api.utils.ItemComparison;
-import betterquesting.api.utils.NBTConverter;
 import betterquesting.api2.client.gui.misc.IGuiRect;
 import betterquesting.api2.client.gui.panels.IGuiPanel;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
 import betterquesting.api2.utils.Tuple2;
+import bq_standard.LazyNBT;
+import bq_standard.NbtBlockIndex;
 import bq_standard.NbtBlockType;
 import bq_standard.client.gui.tasks.PanelTaskBlockBreak;
-import bq_standard.core.BQ_Standard;
 import bq_standard.tasks.factory.FactoryTaskBlockBreak;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import net.minecraft.block.Block;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.init.Blocks;
-import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.*;
-import net.minecraft.nbt.NBTBase.NBTPrimitive;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ResourceLocation;
-import net.minecraftforge.oredict.OreDictionary;
-import org.apache.logging.log4j.Level;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -32,9 +26,9 @@ import java.util.*;
 
 public class TaskBlockBreak implements ITask
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
-	private final TreeMap<UUID, int[]> userProgress = new TreeMap<>();
+	private final IntArrayProgressStore store = new IntArrayProgressStore();
 	public final List<NbtBlockType> blockTypes = new ArrayList<>();
+	private NbtBlockIndex blockIndex = null;
 	
 	public TaskBlockBreak()
 	{
@@ -50,13 +44,13 @@ public class TaskBlockBreak implements ITask
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 	
 	@Override
@@ -67,6 +61,12 @@ public class TaskBlockBreak implements ITask
 	
 	@Override
 	public void detect(ParticipantInfo pInfo, DBEntry<IQuest> quest)
+	{
+	    checkComplete(pInfo);
+	    pInfo.markDirtyParty(Collections.singletonList(quest.getID()));
+	}
+	
+	private void checkComplete(ParticipantInfo pInfo)
 	{
 	    pInfo.ALL_UUIDS.forEach((uuid) -> {
             if(isComplete(uuid)) return;
@@ -79,49 +79,60 @@ public class TaskBlockBreak implements ITask
             }
             setComplete(uuid);
         });
-	    
-	    pInfo.markDirtyParty(Collections.singletonList(quest.getID()));
 	}
 	
-	public void onBlockBreak(ParticipantInfo pInfo, DBEntry<IQuest> quest, Block block, int meta, int x, int y, int z)
+	/**
+	 * Returns the index of the first block type the broken block counts towards or -1 if none. Does not change any progress
+	 */
+	public int matchBlock(Block block, int meta, LazyNBT tileTags)
 	{
-		TileEntity tile = block.hasTileEntity(meta) ? pInfo.PLAYER.worldObj.getTileEntity(x, y, z) : null;
-		NBTTagCompound tags = null;
-		if(tile != null)
-        {
-            tags = new NBTTagCompound();
-            tile.writeToNBT(tags);
-        }
+		for(int i : getBlockIndex().getSlots(block, meta))
+		{
+			if(blockTypes.get(i).getTagMatcher().matches(tileTags)) return i;
+		}
 		
+		return -1;
+	}
+	
+	/**
+	 * Adds a batch of matched breaks (counted per block type index) to the whole party and completes the task where done.
+	 * The caller is responsible for marking the quest dirty
+	 * @return True if anything changed
+	 */
+	public boolean addBreaks(ParticipantInfo pInfo, int[] counts)
+	{
 		final List<Tuple2<UUID, int[]>> progress = getBulkProgress(pInfo.ALL_UUIDS);
 		boolean changed = false;
 		
-		for(int i = 0; i < blockTypes.size(); i++)
+		for(int i = 0; i < counts.length && i < blockTypes.size(); i++)
 		{
-			NbtBlockType targetBlock = blockTypes.get(i);
-			
-			int tmpMeta = (targetBlock.m < 0 || targetBlock.m == OreDictionary.WILDCARD_VALUE)? OreDictionary.WILDCARD_VALUE : meta;
-			boolean oreMatch = targetBlock.oreDict.length() > 0 && OreDictionary.getOres(targetBlock.oreDict).contains(new ItemStack(block, 1, tmpMeta));
+			if(counts[i] <= 0) continue;
 			final int index = i;
+			final int target = blockTypes.get(i).n;
 			
-			if((oreMatch || (block == targetBlock.b && (targetBlock.m < 0 || meta == targetBlock.m))) && ItemComparison.CompareNBTTag(targetBlock.tags, tags, true))
+			for(Tuple2<UUID, int[]> entry : progress)
 			{
-			    progress.forEach((entry) -> {
-			        if(entry.getSecond()[index] >= targetBlock.n) return;
-			        entry.getSecond()[index]++;
-                });
-			    changed = true;
-				break; // NOTE: We're only tracking one break at a time so doing all the progress setting above is fine
+				if(entry.getSecond()[index] >= target) continue;
+				entry.getSecond()[index] = (int)Math.min(target, (long)entry.getSecond()[index] + counts[i]);
+				changed = true;
 			}
 		}
 		
 		if(changed)
         {
             setBulkProgress(progress);
-            detect(pInfo, quest);
+            checkComplete(pInfo);
         }
+        
+        return changed;
 	}
 	
+	private NbtBlockIndex getBlockIndex()
+    {
+        if(blockIndex == null) blockIndex = new NbtBlockIndex(blockTypes);
+        return blockIndex;
+    }
+	
 	@Override
 	public NBTTagCompound writeToNBT(NBTTagCompound nbt)
 	{
@@ -163,92 +174,21 @@ public class TaskBlockBreak implements ITask
 			
 			blockTypes.add(leg);
 		}
+		
+		blockIndex = new NbtBlockIndex(blockTypes);
 	}
 	
 	@Override
 	public void readProgressFromNBT(NBTTagCompound nbt, boolean merge)
 	{
-		if(!merge)
-        {
-            completeUsers.clear();
-            userProgress.clear();
-        }
-		
-		NBTTagList cList = nbt.getTagList("completeUsers", 8);
-		for(int i = 0; i < cList.tagCount(); i++)
-		{
-			try
-			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
-			} catch(Exception e)
-			{
-				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
-			}
-		}
-		
-		NBTTagList pList = nbt.getTagList("userProgress", 10);
-		for(int n = 0; n < pList.tagCount(); n++)
-		{
-			try
-			{
-                NBTTagCompound pTag = pList.getCompoundTagAt(n);
-                UUID uuid = UUID.fromString(pTag.getString("uuid"));
-                
-                int[] data = new int[blockTypes.size()];
-                List<NBTBase> dNbt = NBTConverter.getTagList(pTag.getTagList("data", 3));
-                for(int i = 0; i < data.length && i < dNbt.size(); i++) // TODO: Change this to an int array. This is dumb...
-                {
-                    data[i] = ((NBTPrimitive)dNbt.get(i)).func_150287_d();
-                }
-                
-			    userProgress.put(uuid, data);
-			} catch(Exception e)
-			{
-				BQ_Standard.logger.log(Level.ERROR, "Unable to load user progress for task", e);
-			}
-		}
+		if(!merge) store.reset(null);
+		store.readFromNBT(nbt, blockTypes.size());
 	}
 	
 	@Override
 	public NBTTagCompound writeProgressToNBT(NBTTagCompound nbt, @Nullable List<UUID> users)
 	{
-		NBTTagList jArray = new NBTTagList();
-		NBTTagList progArray = new NBTTagList();
-		
-		if(users != null)
-        {
-            users.forEach((uuid) -> {
-                if(completeUsers.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
-                
-                int[] data = userProgress.get(uuid);
-                if(data != null)
-                {
-                    NBTTagCompound pJson = new NBTTagCompound();
-                    pJson.setString("uuid", uuid.toString());
-                    NBTTagList pArray = new NBTTagList(); // TODO: Why the heck isn't this just an int array?!
-                    for(int i : data) pArray.appendTag(new NBTTagInt(i));
-                    pJson.setTag("data", pArray);
-                    progArray.appendTag(pJson);
-                }
-            });
-        } else
-        {
-            completeUsers.forEach((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
-            
-            userProgress.forEach((uuid, data) -> {
-                NBTTagCompound pJson = new NBTTagCompound();
-			    pJson.setString("uuid", uuid.toString());
-                NBTTagList pArray = new NBTTagList(); // TODO: Why the heck isn't this just an int array?!
-                for(int i : data) pArray.appendTag(new NBTTagInt(i));
-                pJson.setTag("data", pArray);
-                progArray.appendTag(pJson);
-            });
-        }
-		
-		nbt.setTag("completeUsers", jArray);
-		nbt.setTag("userProgress", progArray);
-		
-		return nbt;
+		return store.writeToNBT(nbt, users);
 	}
 	
 	@Override
@@ -256,12 +196,10 @@ public class TaskBlockBreak implements ITask
 	{
 	    if(uuid == null)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
-            userProgress.remove(uuid);
+            store.reset(uuid);
         }
 	}
 
@@ -281,12 +219,12 @@ public class TaskBlockBreak implements ITask
 	
 	private void setUserProgress(UUID uuid, int[] progress)
 	{
-		userProgress.put(uuid, progress);
+		store.set(uuid, progress);
 	}
 	
 	public int[] getUsersProgress(UUID uuid)
 	{
-		int[] progress = userProgress.get(uuid);
+		int[] progress = store.get(uuid);
 		return progress == null || progress.length != blockTypes.size()? new int[blockTypes.size()] : progress;
 	}
 	
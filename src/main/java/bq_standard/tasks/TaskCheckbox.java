@@ -20,13 +20,11 @@ import org.apache.logging.log4j.Level;
 
 import javax.annotation.Nullable;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.UUID;
 
 public class TaskCheckbox implements ITask
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
+	private final ProgressStore store = new ProgressStore();
 	
 	@Override
 	public ResourceLocation getFactoryID()
@@ -43,16 +41,13 @@ public class TaskCheckbox implements ITask
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		if(!completeUsers.contains(uuid))
-		{
-			completeUsers.add(uuid);
-		}
+		store.setComplete(uuid);
 	}
 
 	@Override
@@ -60,10 +55,10 @@ public class TaskCheckbox implements ITask
 	{
 	    if(uuid == null)
         {
-            completeUsers.clear();
+            store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
+            store.reset(uuid);
         }
 	}
 
@@ -83,9 +78,7 @@ public class TaskCheckbox implements ITask
 	{
 		NBTTagList jArray = new NBTTagList();
 		
-		completeUsers.forEach((uuid) -> {
-		    if(users == null || users.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
-		});
+		store.forEachComplete(users, (uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
 		
 		nbt.setTag("completeUsers", jArray);
 		
@@ -95,13 +88,13 @@ public class TaskCheckbox implements ITask
 	@Override
 	public void readProgressFromNBT(NBTTagCompound json, boolean merge)
 	{
-		if(!merge) completeUsers.clear();
+		if(!merge) store.reset(null);
 		NBTTagList cList = json.getTagList("completeUsers", 8);
 		for(int i = 0; i < cList.tagCount(); i++)
 		{
 			try
 			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
+				store.setComplete(UUID.fromString(cList.getStringTagAt(i)));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
@@ -3,25 +3,21 @@ package bq_standard.tasks;
 import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.tasks.ITask;
 import betterquesting.api.utils.BigItemStack;
-import betterquesting.api.utils.ItemComparison;
 import betterquesting.api.utils.JsonHelper;
-import betterquesting.api.utils.NBTConverter;
 import betterquesting.api2.client.gui.misc.IGuiRect;
 import betterquesting.api2.client.gui.panels.IGuiPanel;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
 import betterquesting.api2.utils.Tuple2;
+import bq_standard.ItemMatcher;
 import bq_standard.client.gui.tasks.PanelTaskCrafting;
-import bq_standard.core.BQ_Standard;
 import bq_standard.tasks.factory.FactoryTaskCrafting;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.*;
-import net.minecraft.nbt.NBTBase.NBTPrimitive;
 import net.minecraft.util.ResourceLocation;
-import org.apache.logging.log4j.Level;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -29,15 +25,16 @@ import java.util.*;
 
 public class TaskCrafting implements ITask
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
+	private final IntArrayProgressStore store = new IntArrayProgressStore();
 	public final List<BigItemStack> requiredItems = new ArrayList<>();
-	public final TreeMap<UUID, int[]> userProgress = new TreeMap<>();
 	public boolean partialMatch = true;
 	public boolean ignoreNBT = true;
 	public boolean allowAnvil = false;
 	public boolean allowSmelt = true;
 	public boolean allowCraft = true;
 	
+	private ItemMatcher matcher = null;
+	
 	@Override
 	public ResourceLocation getFactoryID()
 	{
@@ -47,13 +44,13 @@ public class TaskCrafting implements ITask
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 	
 	@Override
@@ -105,19 +102,15 @@ public class TaskCrafting implements ITask
         final List<Tuple2<UUID, int[]>> progress = getBulkProgress(pInfo.ALL_UUIDS);
         boolean changed = false;
         
-		for(int i = 0; i < requiredItems.size(); i++)
+		for(int index : getMatcher().getMatches(stack))
 		{
-			final BigItemStack rStack = requiredItems.get(i);
-			final int index = i;
+			final BigItemStack rStack = requiredItems.get(index);
 			
-			if(ItemComparison.StackMatch(rStack.getBaseStack(), stack, !ignoreNBT, partialMatch) || ItemComparison.OreDictionaryMatch(rStack.getOreIngredient(), rStack.GetTagCompound(), stack, !ignoreNBT, partialMatch))
-			{
-			    progress.forEach((entry) -> {
-			        if(entry.getSecond()[index] >= rStack.stackSize) return;
-			        entry.getSecond()[index] = Math.min(entry.getSecond()[index] + stack.stackSize, rStack.stackSize);
-                });
-			    changed = true;
-			}
+		    progress.forEach((entry) -> {
+		        if(entry.getSecond()[index] >= rStack.stackSize) return;
+		        entry.getSecond()[index] = Math.min(entry.getSecond()[index] + stack.stackSize, rStack.stackSize);
+            });
+		    changed = true;
 		}
 		
 		if(changed)
@@ -161,100 +154,31 @@ public class TaskCrafting implements ITask
 		{
 		    requiredItems.add(JsonHelper.JsonToItemStack(iList.getCompoundTagAt(i)));
 		}
+		
+		matcher = ItemMatcher.compile(requiredItems, ignoreNBT, partialMatch);
 	}
 	
-	@Override
-	public void readProgressFromNBT(NBTTagCompound nbt, boolean merge)
+	private ItemMatcher getMatcher()
 	{
-		if(!merge)
-        {
-            completeUsers.clear();
-            userProgress.clear();
-        }
-		
-		NBTTagList cList = nbt.getTagList("completeUsers", 8);
-		for(int i = 0; i < cList.tagCount(); i++)
+		if(matcher == null || !matcher.isCompiledFrom(requiredItems, ignoreNBT, partialMatch))
 		{
-			try
-			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
-			} catch(Exception e)
-			{
-				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
-			}
+			matcher = ItemMatcher.compile(requiredItems, ignoreNBT, partialMatch);
 		}
 		
-		NBTTagList pList = nbt.getTagList("userProgress", 10);
-		for(int n = 0; n < pList.tagCount(); n++)
-		{
-			NBTTagCompound pTag = pList.getCompoundTagAt(n);
-			UUID uuid;
-			try
-			{
-				uuid = UUID.fromString(pTag.getString("uuid"));
-			} catch(Exception e)
-			{
-				BQ_Standard.logger.log(Level.ERROR, "Unable to load user progress for task", e);
-				continue;
-			}
-			
-			int[] data = new int[requiredItems.size()];
-			List<NBTBase> dJson = NBTConverter.getTagList(pTag.getTagList("data", 3));
-			for(int i = 0; i < data.length && i < dJson.size(); i++)
-			{
-				try
-				{
-					data[i] = ((NBTPrimitive)dJson.get(i)).func_150287_d();
-				} catch(Exception e)
-				{
-					BQ_Standard.logger.log(Level.ERROR, "Incorrect task progress format", e);
-				}
-			}
-			
-			userProgress.put(uuid, data);
-		}
+		return matcher;
+	}
+	
+	@Override
+	public void readProgressFromNBT(NBTTagCompound nbt, boolean merge)
+	{
+		if(!merge) store.reset(null);
+		store.readFromNBT(nbt, requiredItems.size());
 	}
 	
 	@Override
 	public NBTTagCompound writeProgressToNBT(NBTTagCompound nbt, List<UUID> users)
 	{
-		NBTTagList jArray = new NBTTagList();
-		NBTTagList progArray = new NBTTagList();
-		
-		if(users != null)
-        {
-            users.forEach((uuid) -> {
-                if(completeUsers.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
-                
-                int[] data = userProgress.get(uuid);
-                if(data != null)
-                {
-                    NBTTagCompound pJson = new NBTTagCompound();
-                    pJson.setString("uuid", uuid.toString());
-                    NBTTagList pArray = new NBTTagList(); // TODO: Why the heck isn't this just an int array?!
-                    for(int i : data) pArray.appendTag(new NBTTagInt(i));
-                    pJson.setTag("data", pArray);
-                    progArray.appendTag(pJson);
-                }
-            });
-        } else
-        {
-            completeUsers.forEach((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
-            
-            userProgress.forEach((uuid, data) -> {
-                NBTTagCompound pJson = new NBTTagCompound();
-			    pJson.setString("uuid", uuid.toString());
-                NBTTagList pArray = new NBTTagList(); // TODO: Why the heck isn't this just an int array?!
-                for(int i : data) pArray.appendTag(new NBTTagInt(i));
-                pJson.setTag("data", pArray);
-                progArray.appendTag(pJson);
-            });
-        }
-		
-		nbt.setTag("completeUsers", jArray);
-		nbt.setTag("userProgress", progArray);
-		
-		return nbt;
+		return store.writeToNBT(nbt, users);
 	}
 
 	@Override
@@ -262,12 +186,10 @@ public class TaskCrafting implements ITask
 	{
 	    if(uuid == null)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
-            userProgress.remove(uuid);
+            store.reset(uuid);
         }
 	}
  
@@ -286,12 +208,12 @@ public class TaskCrafting implements ITask
 	
 	private void setUserProgress(UUID uuid, int[] progress)
 	{
-		userProgress.put(uuid, progress);
+		store.set(uuid, progress);
 	}
 	
 	public int[] getUsersProgress(UUID uuid)
 	{
-		int[] progress = userProgress.get(uuid);
+		int[] progress = store.get(uuid);
 		return progress == null || progress.length != requiredItems.size()? new int[requiredItems.size()] : progress;
 	}
 	
@@ -4,14 +4,12 @@ import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.tasks.IFluidTask;
 import betterquesting.api.questing.tasks.IItemTask;
 import betterquesting.api.utils.JsonHelper;
-import betterquesting.api.utils.NBTConverter;
 import betterquesting.api2.client.gui.misc.IGuiRect;
 import betterquesting.api2.client.gui.panels.IGuiPanel;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
 import betterquesting.api2.utils.Tuple2;
 import bq_standard.client.gui.tasks.PanelTaskFluid;
-import bq_standard.core.BQ_Standard;
 import bq_standard.tasks.factory.FactoryTaskFluid;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
@@ -19,12 +17,11 @@ import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.entity.player.InventoryPlayer;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.*;
-import net.minecraft.nbt.NBTBase.NBTPrimitive;
 import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fluids.Fluid;
 import net.minecraftforge.fluids.FluidContainerRegistry;
 import net.minecraftforge.fluids.FluidStack;
 import net.minecraftforge.fluids.IFluidContainerItem;
-import org.apache.logging.log4j.Level;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -32,15 +29,19 @@ import java.util.*;
 
 public class TaskFluid implements ITaskInventory, IFluidTask, IItemTask
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
+	private final IntArrayProgressStore store = new IntArrayProgressStore();
 	public final List<FluidStack> requiredFluids = new ArrayList<>();
-	public final TreeMap<UUID, int[]> userProgress = new TreeMap<>();
 	//public boolean partialMatch = true; // Not many ideal ways of implementing this with fluid handlers
 	public boolean ignoreNbt = true;
 	public boolean consume = true;
 	public boolean groupDetect = false;
 	public boolean autoConsume = false;
 	
+	private final HashMap<UUID, Integer> countedStamps = new HashMap<>();
+	private final IdentityHashMap<Fluid, int[]> fluidMap = new IdentityHashMap<>();
+	private FluidStack[] compiledFrom = null;
+	private boolean compiledIgnoreNbt = false;
+	
 	@Override
 	public ResourceLocation getFactoryID()
 	{
@@ -56,21 +57,26 @@ public class TaskFluid implements ITaskInventory, IFluidTask, IItemTask
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 	
 	@Override
-	public void onInventoryChange(@Nonnull DBEntry<IQuest> quest, @Nonnull ParticipantInfo pInfo)
+	public void onInventoryChange(@Nonnull DBEntry<IQuest> quest, @Nonnull ParticipantInfo pInfo, @Nullable BitSet changedSlots)
 	{
-        if(!consume || autoConsume)
+        if(consume)
+        {
+            if(autoConsume) detect(pInfo, quest);
+        } else if(!isComplete(pInfo.UUID))
         {
-            detect(pInfo, quest);
+            PartyInventory party = PartyInventory.get(pInfo, false);
+            Integer counted = countedStamps.get(pInfo.UUID);
+            if(counted == null || counted != party.stamp) updateProgress(pInfo, quest, party);
         }
 	}
 
@@ -78,7 +84,11 @@ public class TaskFluid implements ITaskInventory, IFluidTask, IItemTask
 	public void detect(ParticipantInfo pInfo, DBEntry<IQuest> quest)
 	{
 	    if(isComplete(pInfo.UUID)) return;
-	    
+	    updateProgress(pInfo, quest, consume ? null : PartyInventory.get(pInfo, true));
+	}
+	
+	private void updateProgress(ParticipantInfo pInfo, DBEntry<IQuest> quest, @Nullable PartyInventory party)
+	{
 	    // Removing the consume check here would make the task cheaper on groups and for that reason sharing is restricted to detect only
         final List<Tuple2<UUID, int[]>> progress = getBulkProgress(consume ? Collections.singletonList(pInfo.UUID) : pInfo.ALL_UUIDS);
 		boolean updated = false;
@@ -87,7 +97,17 @@ public class TaskFluid implements ITaskInventory, IFluidTask, IItemTask
         {
             if(groupDetect) // Reset all detect progress
             {
-                progress.forEach((value) -> Arrays.fill(value.getSecond(), 0));
+                for(Tuple2<UUID, int[]> value : progress)
+                {
+                    int[] counts = value.getSecond();
+                    
+                    for(int i = 0; i < counts.length; i++)
+                    {
+                        if(counts[i] == 0) continue;
+                        counts[i] = 0;
+                        updated = true;
+                    }
+                }
             } else
             {
                 for(int i = 0; i < requiredFluids.size(); i++)
@@ -106,50 +126,44 @@ public class TaskFluid implements ITaskInventory, IFluidTask, IItemTask
             }
         }
 		
-		final List<InventoryPlayer> invoList;
 		if(consume)
         {
             // We do not support consuming resources from other member's invetories.
             // This could otherwise be abused to siphon items/fluids unknowingly
-            invoList = Collections.singletonList(pInfo.PLAYER.inventory);
-        } else
-        {
-            invoList = new ArrayList<>();
-            pInfo.ACTIVE_PLAYERS.forEach((p) -> invoList.add(p.inventory));
-        }
-		
-		for(InventoryPlayer invo : invoList)
-        {
+            InventoryPlayer invo = pInfo.PLAYER.inventory;
+            
             for(int i = 0; i < invo.getSizeInventory(); i++)
             {
                 ItemStack stack = invo.getStackInSlot(i);
                 if(stack == null || stack.stackSize <= 0) continue;
-                if(!(stack.getItem() instanceof IFluidContainerItem || FluidContainerRegistry.isFilledContainer(stack))) continue;
                 
-                for(int j = 0; j < requiredFluids.size(); j++)
+                for(int j : getMatches(stack))
+                {
+                    updated |= drainInto(progress, invo, i, j);
+                }
+            }
+        } else
+        {
+            countedStamps.put(pInfo.UUID, party.stamp);
+            
+            for(FluidStack fluid : party.getFluids())
+            {
+                // Allows the fluid detection to split across multiple requirements. Amounts may vary per person
+                int[] remAmounts = new int[progress.size()];
+                Arrays.fill(remAmounts, fluid.amount);
+                
+                for(int j : getMatches(fluid))
                 {
                     final FluidStack rStack = requiredFluids.get(j);
-                    FluidStack drainOG = rStack.copy();
-                    if(ignoreNbt) drainOG.tag = null;
-                    
-                    // Pre-check
-                    FluidStack sample = getFluid(invo, i, false, drainOG.amount);
-                    if(!drainOG.isFluidEqual(sample)) continue;
                     
-                    for(Tuple2<UUID, int[]> value : progress)
+                    for(int n = 0; n < progress.size(); n++)
                     {
+                        Tuple2<UUID, int[]> value = progress.get(n);
                         if(value.getSecond()[j] >= rStack.amount) continue;
-                        int remaining = rStack.amount - value.getSecond()[j];
                         
-                        FluidStack drain = rStack.copy();
-                        drain.amount = remaining; //drain.amount = remaining / stack.stackSize;
-                        if(ignoreNbt) drain.tag = null;
-                        if(drain.amount <= 0) continue;
-                        
-                        FluidStack fluid = getFluid(invo, i, consume, drain.amount);
-                        if(fluid == null || fluid.amount <= 0) continue;
-            
-                        value.getSecond()[j] += fluid.amount * stack.stackSize;
+                        int temp = Math.min(rStack.amount - value.getSecond()[j], remAmounts[n]);
+                        remAmounts[n] -= temp;
+                        value.getSecond()[j] += temp;
                         updated = true;
                     }
                 }
@@ -160,6 +174,105 @@ public class TaskFluid implements ITaskInventory, IFluidTask, IItemTask
 		checkAndComplete(pInfo, quest, updated);
 	}
 	
+	/**
+	 * Indices of the required fluids the given stack contains
+	 */
+	private int[] getMatches(ItemStack stack)
+	{
+		if(stack.getItem() instanceof IFluidContainerItem)
+		{
+			return getMatches(((IFluidContainerItem)stack.getItem()).getFluid(stack));
+		} else if(FluidContainerRegistry.isFilledContainer(stack))
+		{
+			return getMatches(FluidContainerRegistry.getFluidForFilledItem(stack));
+		}
+		
+		return new int[0];
+	}
+	
+	/**
+	 * Indices of the required fluids the given fluid counts towards. Looked up by fluid first so only the requirements
+	 * for that fluid have their tags compared
+	 */
+	private int[] getMatches(@Nullable FluidStack contents)
+	{
+		if(contents == null || contents.getFluid() == null) return new int[0];
+		
+		int[] candidates = getFluidMap().get(contents.getFluid());
+		if(candidates == null) return new int[0];
+		
+		int[] matches = new int[candidates.length];
+		int n = 0;
+		
+		for(int j : candidates)
+		{
+			// Same as isFluidEqual() against a copy with its tag removed when NBT is ignored
+			if(Objects.equals(ignoreNbt ? null : requiredFluids.get(j).tag, contents.tag)) matches[n++] = j;
+		}
+		
+		return n == matches.length ? matches : Arrays.copyOf(matches, n);
+	}
+	
+	private IdentityHashMap<Fluid, int[]> getFluidMap()
+	{
+		if(!isCompiled())
+		{
+			fluidMap.clear();
+			compiledFrom = requiredFluids.toArray(new FluidStack[0]);
+			compiledIgnoreNbt = ignoreNbt;
+			
+			for(int j = 0; j < compiledFrom.length; j++)
+			{
+				if(compiledFrom[j] == null || compiledFrom[j].getFluid() == null) continue;
+				
+				int[] indices = fluidMap.get(compiledFrom[j].getFluid());
+				indices = indices == null ? new int[1] : Arrays.copyOf(indices, indices.length + 1);
+				indices[indices.length - 1] = j;
+				fluidMap.put(compiledFrom[j].getFluid(), indices);
+			}
+		}
+		
+		return fluidMap;
+	}
+	
+	private boolean isCompiled()
+	{
+		if(compiledFrom == null || compiledIgnoreNbt != ignoreNbt || compiledFrom.length != requiredFluids.size()) return false;
+		
+		for(int j = 0; j < compiledFrom.length; j++)
+		{
+			if(compiledFrom[j] != requiredFluids.get(j)) return false; // Edited directly (importers) since it was compiled
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Adds whatever the stack in the given slot can contribute to required fluid j for each user still missing some of it
+	 */
+	private boolean drainInto(List<Tuple2<UUID, int[]>> progress, InventoryPlayer invo, int slot, int j)
+	{
+		final FluidStack rStack = requiredFluids.get(j);
+		boolean updated = false;
+		
+		for(Tuple2<UUID, int[]> value : progress)
+		{
+			if(value.getSecond()[j] >= rStack.amount) continue;
+			int remaining = rStack.amount - value.getSecond()[j];
+			
+			ItemStack stack = invo.getStackInSlot(slot);
+			if(stack == null) break;
+			
+			FluidStack fluid = getFluid(invo, slot, consume, remaining);
+			if(fluid == null || fluid.amount <= 0) continue;
+			
+			value.getSecond()[j] += fluid.amount * stack.stackSize;
+			updated = true;
+		}
+		
+		return updated;
+	}
+	
 	private void checkAndComplete(ParticipantInfo pInfo, DBEntry<IQuest> quest, boolean resync)
     {
         final List<Tuple2<UUID, int[]>> progress = getBulkProgress(consume ? Collections.singletonList(pInfo.UUID) : pInfo.ALL_UUIDS);
@@ -271,111 +384,44 @@ public class TaskFluid implements ITaskInventory, IFluidTask, IItemTask
 		groupDetect = nbt.getBoolean("groupDetect");
 		autoConsume = nbt.getBoolean("autoConsume");
 		
+		countedStamps.clear();
 		requiredFluids.clear();
 		NBTTagList fList = nbt.getTagList("requiredFluids", 10);
 		for(int i = 0; i < fList.tagCount(); i++)
 		{
 			requiredFluids.add(JsonHelper.JsonToFluidStack(fList.getCompoundTagAt(i)));
 		}
+		
+		compiledFrom = null;
+		getFluidMap();
 	}
 	
 	@Override
 	public void readProgressFromNBT(NBTTagCompound nbt, boolean merge)
 	{
-		if(!merge)
-        {
-            completeUsers.clear();
-            userProgress.clear();
-        }
+		countedStamps.clear();
 		
-		NBTTagList cList = nbt.getTagList("completeUsers", 8);
-		for(int i = 0; i < cList.tagCount(); i++)
-		{
-			try
-			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
-			} catch(Exception e)
-			{
-				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
-			}
-		}
-		
-		NBTTagList pList = nbt.getTagList("userProgress", 10);
-		for(int n = 0; n < pList.tagCount(); n++)
-		{
-			try
-			{
-                NBTTagCompound pTag = pList.getCompoundTagAt(n);
-                UUID uuid = UUID.fromString(pTag.getString("uuid"));
-                
-                int[] data = new int[requiredFluids.size()];
-			    List<NBTBase> dNbt = NBTConverter.getTagList(pTag.getTagList("data", 3));
-                for(int i = 0; i < data.length && i < dNbt.size(); i++) // TODO: Change this to an int array. This is dumb...
-                {
-					data[i] = ((NBTPrimitive)dNbt.get(i)).func_150287_d();
-                }
-                
-			    userProgress.put(uuid, data);
-			} catch(Exception e)
-			{
-				BQ_Standard.logger.log(Level.ERROR, "Unable to load user progress for task", e);
-			}
-		}
+		if(!merge) store.reset(null);
+		store.readFromNBT(nbt, requiredFluids.size());
 	}
 	
 	@Override
 	public NBTTagCompound writeProgressToNBT(NBTTagCompound nbt, @Nullable List<UUID> users)
 	{
-		NBTTagList jArray = new NBTTagList();
-		NBTTagList progArray = new NBTTagList();
-		
-		if(users != null)
-        {
-            users.forEach((uuid) -> {
-                if(completeUsers.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
-                
-                int[] data = userProgress.get(uuid);
-                if(data != null)
-                {
-                    NBTTagCompound pJson = new NBTTagCompound();
-                    pJson.setString("uuid", uuid.toString());
-                    NBTTagList pArray = new NBTTagList(); // TODO: Why the heck isn't this just an int array?!
-                    for(int i : data) pArray.appendTag(new NBTTagInt(i));
-                    pJson.setTag("data", pArray);
-                    progArray.appendTag(pJson);
-                }
-            });
-        } else
-        {
-            completeUsers.forEach((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
-            
-            userProgress.forEach((uuid, data) -> {
-                NBTTagCompound pJson = new NBTTagCompound();
-			    pJson.setString("uuid", uuid.toString());
-                NBTTagList pArray = new NBTTagList(); // TODO: Why the heck isn't this just an int array?!
-                for(int i : data) pArray.appendTag(new NBTTagInt(i));
-                pJson.setTag("data", pArray);
-                progArray.appendTag(pJson);
-            });
-        }
-		
-		nbt.setTag("completeUsers", jArray);
-		nbt.setTag("userProgress", progArray);
-		
-		return nbt;
+		return store.writeToNBT(nbt, users);
 	}
 
 	@Override
 	public void resetUser(@Nullable UUID uuid)
 	{
+	    countedStamps.clear();
+	    
 	    if(uuid == null)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
-            userProgress.remove(uuid);
+            store.reset(uuid);
         }
 	}
  
@@ -499,12 +545,12 @@ public class TaskFluid implements ITaskInventory, IFluidTask, IItemTask
  
 	private void setUserProgress(UUID uuid, int[] progress)
 	{
-		userProgress.put(uuid, progress);
+		store.set(uuid, progress);
 	}
  
 	public int[] getUsersProgress(UUID uuid)
 	{
-		int[] progress = userProgress.get(uuid);
+		int[] progress = store.get(uuid);
 		return progress == null || progress.length != requiredFluids.size()? new int[requiredFluids.size()] : progress;
 	}
 	
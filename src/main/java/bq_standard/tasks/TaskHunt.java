@@ -2,12 +2,14 @@ package bq_standard.tasks;
 
 import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.tasks.ITask;
-import betterquesting.api.utils.ItemComparison;
 import betterquesting.api2.client.gui.misc.IGuiRect;
 import betterquesting.api2.client.gui.panels.IGuiPanel;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
 import betterquesting.api2.utils.Tuple2;
+import bq_standard.EntityClassMatcher;
+import bq_standard.LazyNBT;
+import bq_standard.NBTMatcher;
 import bq_standard.client.gui.editors.tasks.GuiEditTaskHunt;
 import bq_standard.client.gui.tasks.PanelTaskHunt;
 import bq_standard.core.BQ_Standard;
@@ -15,8 +17,6 @@ import bq_standard.tasks.factory.FactoryTaskHunt;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import net.minecraft.client.gui.GuiScreen;
-import net.minecraft.entity.Entity;
-import net.minecraft.entity.EntityList;
 import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
@@ -31,8 +31,7 @@ import java.util.*;
 
 public class TaskHunt implements ITask
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
-	private final TreeMap<UUID, Integer> userProgress = new TreeMap<>();
+	private final IntProgressStore store = new IntProgressStore();
 	public String idName = "Zombie";
 	public String damageType = "";
 	public int required = 1;
@@ -44,6 +43,10 @@ public class TaskHunt implements ITask
 	 */
 	public NBTTagCompound targetTags = new NBTTagCompound();
 	
+	private EntityClassMatcher targetMatcher = null;
+	private NBTMatcher tagMatcher = null;
+	private NBTTagCompound matcherTags = null;
+	
 	@Override
 	public ResourceLocation getFactoryID()
 	{
@@ -53,13 +56,13 @@ public class TaskHunt implements ITask
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 	
 	@Override
@@ -80,40 +83,54 @@ public class TaskHunt implements ITask
 		pInfo.markDirtyParty(Collections.singletonList(quest.getID()));
 	}
 	
-	@SuppressWarnings("unchecked")
-	public void onKilledByPlayer(ParticipantInfo pInfo, DBEntry<IQuest> quest, EntityLivingBase entity, DamageSource source)
+	/**
+	 * Whether this kill counts towards the task. Does not change any progress
+	 */
+	public boolean isValidKill(EntityLivingBase entity, DamageSource source, LazyNBT subjectTags)
 	{
-		if(damageType.length() > 0 && (source == null || !damageType.equalsIgnoreCase(source.damageType))) return;
-		
-		Class<? extends Entity> subject = entity.getClass();
-		Class<? extends Entity> target = (Class<? extends Entity>)EntityList.stringToClassMapping.get(idName);
-		String subjectID = EntityList.getEntityString(entity);
-		
-		if(subjectID == null || target == null)
-		{
-			return; // Missing necessary data
-		} else if(subtypes && !target.isAssignableFrom(subject))
-		{
-			return; // This is not the intended target or sub-type
-		} else if(!subtypes && !subjectID.equals(idName))
-		{
-			return; // This isn't the exact target required
-		}
+		if(damageType.length() > 0 && (source == null || !damageType.equalsIgnoreCase(source.damageType))) return false;
 		
-		NBTTagCompound subjectTags = new NBTTagCompound();
-		entity.writeToNBTOptional(subjectTags);
-		if(!ignoreNBT && !ItemComparison.CompareNBTTag(targetTags, subjectTags, true)) return;
+		if(!isTargetClass(entity.getClass())) return false; // This is not the intended target or sub-type
 		
+		return ignoreNBT || getTagMatcher().matches(subjectTags);
+	}
+	
+	/**
+	 * Adds a batch of valid kills to the whole party and completes the task where done. The caller is responsible for marking the quest dirty
+	 * @return True if anything changed
+	 */
+	public boolean addKills(ParticipantInfo pInfo, int kills)
+	{
 		final List<Tuple2<UUID, Integer>> progress = getBulkProgress(pInfo.ALL_UUIDS);
+		boolean changed = false;
         
-        progress.forEach((value) -> {
-            if(isComplete(value.getFirst())) return;
-            int np = Math.min(required, value.getSecond() + 1);
+        for(Tuple2<UUID, Integer> value : progress)
+        {
+            if(isComplete(value.getFirst())) continue;
+            int np = (int)Math.min(required, (long)value.getSecond() + kills);
             setUserProgress(value.getFirst(), np);
             if(np >= required) setComplete(value.getFirst());
-        });
+            changed = true;
+        }
         
-		pInfo.markDirtyParty(Collections.singletonList(quest.getID()));
+		return changed;
+	}
+	
+	public boolean isTargetClass(Class<?> subject)
+	{
+		if(targetMatcher == null || !targetMatcher.isFor(idName, subtypes)) targetMatcher = new EntityClassMatcher(idName, subtypes);
+		return targetMatcher.matches(subject);
+	}
+	
+	private NBTMatcher getTagMatcher()
+	{
+		if(tagMatcher == null || matcherTags != targetTags)
+		{
+			tagMatcher = NBTMatcher.compile(targetTags);
+			matcherTags = targetTags;
+		}
+		
+		return tagMatcher;
 	}
 	
 	@Override
@@ -138,6 +155,8 @@ public class TaskHunt implements ITask
 		ignoreNBT = nbt.getBoolean("ignoreNBT");
 		targetTags = nbt.getCompoundTag("targetNBT");
 		damageType = nbt.getString("damageType");
+		targetMatcher = new EntityClassMatcher(idName, subtypes);
+		tagMatcher = null;
 	}
 	
 	@Override
@@ -145,8 +164,7 @@ public class TaskHunt implements ITask
 	{
 		if(!merge)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         }
 		
 		NBTTagList cList = nbt.getTagList("completeUsers", 8);
@@ -154,7 +172,7 @@ public class TaskHunt implements ITask
 		{
 			try
 			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
+				store.setComplete(UUID.fromString(cList.getStringTagAt(i)));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
@@ -168,7 +186,7 @@ public class TaskHunt implements ITask
 			{
                 NBTTagCompound pTag = pList.getCompoundTagAt(n);
                 UUID uuid = UUID.fromString(pTag.getString("uuid"));
-                userProgress.put(uuid, pTag.getInteger("value"));
+                store.set(uuid, pTag.getInteger("value"));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load user progress for task", e);
@@ -185,11 +203,11 @@ public class TaskHunt implements ITask
 		if(users != null)
         {
             users.forEach((uuid) -> {
-                if(completeUsers.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
+                if(store.isComplete(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
                 
-                Integer data = userProgress.get(uuid);
-                if(data != null)
+                if(store.hasProgress(uuid))
                 {
+                    int data = store.get(uuid);
                     NBTTagCompound pJson = new NBTTagCompound();
                     pJson.setString("uuid", uuid.toString());
                     pJson.setInteger("value", data);
@@ -198,9 +216,9 @@ public class TaskHunt implements ITask
             });
         } else
         {
-            completeUsers.forEach((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
+            store.forEachComplete((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
             
-            userProgress.forEach((uuid, data) -> {
+            store.forEach((uuid, data) -> {
                 NBTTagCompound pJson = new NBTTagCompound();
 			    pJson.setString("uuid", uuid.toString());
                 pJson.setInteger("value", data);
@@ -219,12 +237,10 @@ public class TaskHunt implements ITask
 	{
 	    if(uuid == null)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
-            userProgress.remove(uuid);
+            store.reset(uuid);
         }
 	}
 	
@@ -247,13 +263,12 @@ public class TaskHunt implements ITask
 	
 	private void setUserProgress(UUID uuid, int progress)
 	{
-		userProgress.put(uuid, progress);
+		store.set(uuid, progress);
 	}
 	
 	public int getUsersProgress(UUID uuid)
 	{
-        Integer n = userProgress.get(uuid);
-        return n == null? 0 : n;
+        return store.get(uuid);
 	}
 	
 	private List<Tuple2<UUID, Integer>> getBulkProgress(@Nonnull List<UUID> uuids)
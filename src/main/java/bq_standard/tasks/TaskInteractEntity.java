@@ -9,6 +9,9 @@ import betterquesting.api2.client.gui.panels.IGuiPanel;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
 import betterquesting.api2.utils.Tuple2;
+import bq_standard.EntityClassMatcher;
+import bq_standard.LazyNBT;
+import bq_standard.NBTMatcher;
 import bq_standard.client.gui.tasks.PanelTaskInteractEntity;
 import bq_standard.core.BQ_Standard;
 import bq_standard.tasks.factory.FactoryTaskInteractEntity;
@@ -16,7 +19,6 @@ import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.entity.Entity;
-import net.minecraft.entity.EntityList;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
@@ -30,8 +32,7 @@ import java.util.*;
 
 public class TaskInteractEntity implements ITask
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
-	private final TreeMap<UUID, Integer> userProgress = new TreeMap<>();
+	private final IntProgressStore store = new IntProgressStore();
 	
 	@Nullable
     public BigItemStack targetItem = null;
@@ -42,6 +43,9 @@ public class TaskInteractEntity implements ITask
     public NBTTagCompound entityTags = new NBTTagCompound();
     public boolean entitySubtypes = true;
 	public boolean ignoreEntityNBT = true;
+	private EntityClassMatcher targetMatcher = null;
+	private NBTMatcher tagMatcher = null;
+	private NBTTagCompound matcherTags = null;
 	
 	public boolean onInteract = true;
 	public boolean onHit = false;
@@ -59,26 +63,13 @@ public class TaskInteractEntity implements ITask
         return FactoryTaskInteractEntity.INSTANCE.getRegistryName();
     }
     
-    public void onInteract(ParticipantInfo pInfo, DBEntry<IQuest> quest, ItemStack item, Entity entity, boolean isHit)
+    public void onInteract(ParticipantInfo pInfo, DBEntry<IQuest> quest, ItemStack item, Entity entity, LazyNBT subjectTags, boolean isHit)
     {
         if((!onHit && isHit) || (!onInteract && !isHit)) return;
     
-        //noinspection unchecked
-        Class<? extends Entity> targetClass = (Class<? extends Entity>)EntityList.stringToClassMapping.get(entityID);
-        if(targetClass == null) return; // No idea what we're looking for
+        if(!isTargetClass(entity.getClass())) return;
         
-        Class<? extends Entity> subjectClass = entity.getClass();
-        String subjectRes = EntityList.getEntityString(entity);
-        if(subjectRes == null) return; // This isn't a registered entity!
-        
-        if(entitySubtypes ? !targetClass.isAssignableFrom(subjectClass) : !subjectRes.equals(entityID)) return;
-        
-        if(!ignoreEntityNBT)
-        {
-            NBTTagCompound subjectTags = new NBTTagCompound();
-            entity.writeToNBTOptional(subjectTags);
-            if(!ItemComparison.CompareNBTTag(entityTags, subjectTags, true)) return;
-        }
+        if(!ignoreEntityNBT && !getTagMatcher().matches(subjectTags)) return;
         
         if(targetItem != null)
         {
@@ -103,6 +94,23 @@ public class TaskInteractEntity implements ITask
 		pInfo.markDirtyParty(Collections.singletonList(quest.getID()));
     }
     
+    public boolean isTargetClass(Class<?> subject)
+    {
+        if(targetMatcher == null || !targetMatcher.isFor(entityID, entitySubtypes)) targetMatcher = new EntityClassMatcher(entityID, entitySubtypes);
+        return targetMatcher.matches(subject);
+    }
+    
+    private NBTMatcher getTagMatcher()
+    {
+        if(tagMatcher == null || matcherTags != entityTags)
+        {
+            tagMatcher = NBTMatcher.compile(entityTags);
+            matcherTags = entityTags;
+        }
+        
+        return tagMatcher;
+    }
+    
     @Override
     public void detect(ParticipantInfo pInfo, DBEntry<IQuest> quest)
     {
@@ -118,13 +126,13 @@ public class TaskInteractEntity implements ITask
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 
 	@Override
@@ -132,12 +140,10 @@ public class TaskInteractEntity implements ITask
 	{
 	    if(uuid == null)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
-            userProgress.remove(uuid);
+            store.reset(uuid);
         }
 	}
     
@@ -161,8 +167,7 @@ public class TaskInteractEntity implements ITask
 	{
 		if(!merge)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         }
 		
 		NBTTagList cList = nbt.getTagList("completeUsers", 8);
@@ -170,7 +175,7 @@ public class TaskInteractEntity implements ITask
 		{
 			try
 			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
+				store.setComplete(UUID.fromString(cList.getStringTagAt(i)));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
@@ -184,7 +189,7 @@ public class TaskInteractEntity implements ITask
 			{
                 NBTTagCompound pTag = pList.getCompoundTagAt(n);
                 UUID uuid = UUID.fromString(pTag.getString("uuid"));
-                userProgress.put(uuid, pTag.getInteger("value"));
+                store.set(uuid, pTag.getInteger("value"));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load user progress for task", e);
@@ -201,11 +206,11 @@ public class TaskInteractEntity implements ITask
 		if(users != null)
         {
             users.forEach((uuid) -> {
-                if(completeUsers.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
+                if(store.isComplete(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
                 
-                Integer data = userProgress.get(uuid);
-                if(data != null)
+                if(store.hasProgress(uuid))
                 {
+                    int data = store.get(uuid);
                     NBTTagCompound pJson = new NBTTagCompound();
                     pJson.setString("uuid", uuid.toString());
                     pJson.setInteger("value", data);
@@ -214,9 +219,9 @@ public class TaskInteractEntity implements ITask
             });
         } else
         {
-            completeUsers.forEach((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
+            store.forEachComplete((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
             
-            userProgress.forEach((uuid, data) -> {
+            store.forEach((uuid, data) -> {
                 NBTTagCompound pJson = new NBTTagCompound();
 			    pJson.setString("uuid", uuid.toString());
                 pJson.setInteger("value", data);
@@ -259,6 +264,8 @@ public class TaskInteractEntity implements ITask
         entityTags = nbt.getCompoundTag("targetNBT");
         ignoreEntityNBT = nbt.getBoolean("ignoreTargetNBT");
         entitySubtypes = nbt.getBoolean("targetSubtypes");
+        targetMatcher = new EntityClassMatcher(entityID, entitySubtypes);
+        tagMatcher = null;
         
         required = nbt.getInteger("requiredUses");
         onInteract = nbt.getBoolean("onInteract");
@@ -267,13 +274,12 @@ public class TaskInteractEntity implements ITask
 	
 	private void setUserProgress(UUID uuid, int progress)
 	{
-		userProgress.put(uuid, progress);
+		store.set(uuid, progress);
 	}
 	
 	public int getUsersProgress(UUID uuid)
 	{
-        Integer n = userProgress.get(uuid);
-        return n == null? 0 : n;
+        return store.get(uuid);
 	}
 	
 	private List<Tuple2<UUID, Integer>> getBulkProgress(@Nonnull List<UUID> uuids)
@@ -9,6 +9,8 @@ import betterquesting.api2.client.gui.panels.IGuiPanel;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
 import betterquesting.api2.utils.Tuple2;
+import bq_standard.LazyNBT;
+import bq_standard.NbtBlockIndex;
 import bq_standard.NbtBlockType;
 import bq_standard.client.gui.tasks.PanelTaskInteractItem;
 import bq_standard.core.BQ_Standard;
@@ -22,9 +24,7 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.nbt.NBTTagString;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ResourceLocation;
-import net.minecraftforge.oredict.OreDictionary;
 import org.apache.logging.log4j.Level;
 
 import javax.annotation.Nonnull;
@@ -33,12 +33,12 @@ import java.util.*;
 
 public class TaskInteractItem implements ITask
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
-	private final TreeMap<UUID, Integer> userProgress = new TreeMap<>();
+	private final IntProgressStore store = new IntProgressStore();
 	
 	@Nullable
     public BigItemStack targetItem = null;
     public final NbtBlockType targetBlock = new NbtBlockType(null);
+    private NbtBlockIndex blockIndex = null;
 	public boolean partialMatch = true;
 	public boolean ignoreNBT = true;
 	public boolean onInteract = true;
@@ -57,28 +57,16 @@ public class TaskInteractItem implements ITask
         return FactoryTaskInteractItem.INSTANCE.getRegistryName();
     }
     
-    public void onInteract(ParticipantInfo pInfo, DBEntry<IQuest> quest, ItemStack item, Block block, int meta, int x, int y, int z, boolean isHit)
+    public void onInteract(ParticipantInfo pInfo, DBEntry<IQuest> quest, ItemStack item, Block block, int meta, LazyNBT tileTags, boolean isHit)
     {
         if((!onHit && isHit) || (!onInteract && !isHit)) return;
         
         if(targetBlock.b != Blocks.air && targetBlock.b != null)
         {
             if(block == Blocks.air || block == null) return;
-            TileEntity tile = block.hasTileEntity(meta) ? pInfo.PLAYER.worldObj.getTileEntity(x, y, z) : null;
-            NBTTagCompound tags = null;
-            if(tile != null)
-            {
-                tags = new NBTTagCompound();
-                tile.writeToNBT(tags);
-            }
+            if(getBlockIndex().getSlots(block, meta).length <= 0) return;
             
-            int tmpMeta = (targetBlock.m < 0 || targetBlock.m == OreDictionary.WILDCARD_VALUE)? OreDictionary.WILDCARD_VALUE : meta;
-            boolean oreMatch = targetBlock.oreDict.length() > 0 && OreDictionary.getOres(targetBlock.oreDict).contains(new ItemStack(block, 1, tmpMeta));
-    
-            if((!oreMatch && (block != targetBlock.b || (targetBlock.m >= 0 && meta != targetBlock.m))) || !ItemComparison.CompareNBTTag(targetBlock.tags, tags, true))
-            {
-                return;
-            }
+            if(!targetBlock.getTagMatcher().matches(tileTags)) return;
         }
         
         if(targetItem != null)
@@ -104,6 +92,12 @@ public class TaskInteractItem implements ITask
 		pInfo.markDirtyParty(Collections.singletonList(quest.getID()));
     }
     
+    private NbtBlockIndex getBlockIndex()
+    {
+        if(blockIndex == null) blockIndex = new NbtBlockIndex(Collections.singletonList(targetBlock));
+        return blockIndex;
+    }
+    
     @Override
     public void detect(ParticipantInfo pInfo, DBEntry<IQuest> quest)
     {
@@ -119,13 +113,13 @@ public class TaskInteractItem implements ITask
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 
 	@Override
@@ -133,12 +127,10 @@ public class TaskInteractItem implements ITask
 	{
 	    if(uuid == null)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
-            userProgress.remove(uuid);
+            store.reset(uuid);
         }
 	}
     
@@ -162,8 +154,7 @@ public class TaskInteractItem implements ITask
 	{
 		if(!merge)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         }
 		
 		NBTTagList cList = nbt.getTagList("completeUsers", 8);
@@ -171,7 +162,7 @@ public class TaskInteractItem implements ITask
 		{
 			try
 			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
+				store.setComplete(UUID.fromString(cList.getStringTagAt(i)));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
@@ -185,7 +176,7 @@ public class TaskInteractItem implements ITask
 			{
                 NBTTagCompound pTag = pList.getCompoundTagAt(n);
                 UUID uuid = UUID.fromString(pTag.getString("uuid"));
-                userProgress.put(uuid, pTag.getInteger("value"));
+                store.set(uuid, pTag.getInteger("value"));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load user progress for task", e);
@@ -202,11 +193,11 @@ public class TaskInteractItem implements ITask
 		if(users != null)
         {
             users.forEach((uuid) -> {
-                if(completeUsers.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
+                if(store.isComplete(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
                 
-                Integer data = userProgress.get(uuid);
-                if(data != null)
+                if(store.hasProgress(uuid))
                 {
+                    int data = store.get(uuid);
                     NBTTagCompound pJson = new NBTTagCompound();
                     pJson.setString("uuid", uuid.toString());
                     pJson.setInteger("value", data);
@@ -215,9 +206,9 @@ public class TaskInteractItem implements ITask
             });
         } else
         {
-            completeUsers.forEach((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
+            store.forEachComplete((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
             
-            userProgress.forEach((uuid, data) -> {
+            store.forEach((uuid, data) -> {
                 NBTTagCompound pJson = new NBTTagCompound();
 			    pJson.setString("uuid", uuid.toString());
                 pJson.setInteger("value", data);
@@ -249,6 +240,7 @@ public class TaskInteractItem implements ITask
     {
         targetItem = BigItemStack.loadItemStackFromNBT(nbt.getCompoundTag("item"));
         targetBlock.readFromNBT(nbt.getCompoundTag("block"));
+        blockIndex = new NbtBlockIndex(Collections.singletonList(targetBlock));
         ignoreNBT = nbt.getBoolean("ignoreNbt");
         partialMatch = nbt.getBoolean("partialMatch");
         required = nbt.getInteger("requiredUses");
@@ -258,13 +250,12 @@ public class TaskInteractItem implements ITask
 	
 	private void setUserProgress(UUID uuid, Integer progress)
 	{
-		userProgress.put(uuid, progress);
+		store.set(uuid, progress);
 	}
 	
 	public int getUsersProgress(UUID uuid)
 	{
-        Integer n = userProgress.get(uuid);
-        return n == null? 0 : n;
+        return store.get(uuid);
 	}
 	
 	private List<Tuple2<UUID, Integer>> getBulkProgress(@Nonnull List<UUID> uuids)
@@ -30,7 +30,7 @@ import java.util.*;
 
 public class TaskLocation implements ITaskTickable
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
+	private final ProgressStore store = new ProgressStore();
 	public String name = "New Location";
 	public String structure = "";
 	public int biome = -1;
@@ -59,13 +59,13 @@ public class TaskLocation implements ITaskTickable
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
  
 	@Override
@@ -73,17 +73,23 @@ public class TaskLocation implements ITaskTickable
 	{
 	    if(uuid == null)
         {
-		    completeUsers.clear();
+		    store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
+            store.reset(uuid);
         }
 	}
 	
 	@Override
 	public void tickTask(@Nonnull ParticipantInfo pInfo, DBEntry<IQuest> quest)
 	{
-		if(pInfo.PLAYER.ticksExisted%100 == 0) internalDetect(pInfo, quest);
+		internalDetect(pInfo, quest);
+	}
+	
+	@Override
+	public int getTickInterval()
+	{
+		return 100;
 	}
 	
 	@Override
@@ -182,9 +188,7 @@ public class TaskLocation implements ITaskTickable
 	{
 		NBTTagList jArray = new NBTTagList();
 		
-		completeUsers.forEach((uuid) -> {
-		    if(users == null || users.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
-		});
+		store.forEachComplete(users, (uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
 		
 		nbt.setTag("completeUsers", jArray);
 		
@@ -194,13 +198,13 @@ public class TaskLocation implements ITaskTickable
 	@Override
 	public void readProgressFromNBT(NBTTagCompound nbt, boolean merge)
 	{
-		if(!merge) completeUsers.clear();
+		if(!merge) store.reset(null);
 		NBTTagList cList = nbt.getTagList("completeUsers", 8);
 		for(int i = 0; i < cList.tagCount(); i++)
 		{
 			try
 			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
+				store.setComplete(UUID.fromString(cList.getStringTagAt(i)));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
@@ -1,11 +1,12 @@
 package bq_standard.tasks;
 
 import betterquesting.api.questing.IQuest;
-import betterquesting.api.utils.ItemComparison;
 import betterquesting.api2.client.gui.misc.IGuiRect;
 import betterquesting.api2.client.gui.panels.IGuiPanel;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
+import bq_standard.EntityClassMatcher;
+import bq_standard.NBTMatcher;
 import bq_standard.client.gui.editors.tasks.GuiEditTaskMeeting;
 import bq_standard.client.gui.tasks.PanelTaskMeeting;
 import bq_standard.core.BQ_Standard;
@@ -14,7 +15,6 @@ import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.entity.Entity;
-import net.minecraft.entity.EntityList;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.nbt.NBTTagString;
@@ -27,7 +27,7 @@ import java.util.*;
 
 public class TaskMeeting implements ITaskTickable
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
+	private final ProgressStore store = new ProgressStore();
 	
 	public String idName = "Villager";
 	public int range = 4;
@@ -40,6 +40,10 @@ public class TaskMeeting implements ITaskTickable
 	 */
 	public NBTTagCompound targetTags = new NBTTagCompound();
 	
+	private EntityClassMatcher targetMatcher = null;
+	private NBTMatcher tagMatcher = null;
+	private NBTTagCompound matcherTags = null;
+	
 	@Override
 	public ResourceLocation getFactoryID()
 	{
@@ -55,13 +59,13 @@ public class TaskMeeting implements ITaskTickable
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 
 	@Override
@@ -69,17 +73,23 @@ public class TaskMeeting implements ITaskTickable
 	{
 	    if(uuid == null)
         {
-		    completeUsers.clear();
+		    store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
+            store.reset(uuid);
         }
 	}
 	
 	@Override
 	public void tickTask(@Nonnull ParticipantInfo pInfo, DBEntry<IQuest> quest)
 	{
-		if(pInfo.PLAYER.ticksExisted%60 == 0) detect(pInfo, quest);
+		detect(pInfo, quest);
+	}
+	
+	@Override
+	public int getTickInterval()
+	{
+		return 60;
 	}
 	
 	@Override
@@ -89,33 +99,24 @@ public class TaskMeeting implements ITaskTickable
         
         //noinspection unchecked
         List<Entity> list = pInfo.PLAYER.worldObj.getEntitiesWithinAABBExcludingEntity(pInfo.PLAYER, pInfo.PLAYER.boundingBox.expand(range, range, range));
-        //noinspection unchecked
-        Class<? extends Entity> target = (Class<? extends Entity>)EntityList.stringToClassMapping.get(idName);
-		if(target == null) return;
+		if(targetMatcher == null || !targetMatcher.isFor(idName, subtypes)) targetMatcher = new EntityClassMatcher(idName, subtypes);
+		if(tagMatcher == null || matcherTags != targetTags)
+		{
+			tagMatcher = NBTMatcher.compile(targetTags);
+			matcherTags = targetTags;
+		}
 		
 		int n = 0;
 		
 		for(Entity entity : list)
 		{
-			Class<? extends Entity> subject = entity.getClass();
-			String subjectID = EntityList.getEntityString(entity);
-			
-			if(subjectID == null)
-			{
-				continue;
-			} else if(subtypes && !target.isAssignableFrom(subject))
-			{
-				continue; // This is not the intended target or sub-type
-			} else if(!subtypes && !subjectID.equals(idName))
-			{
-				continue; // This isn't the exact target required
-			}
+			if(!targetMatcher.matches(entity)) continue; // This is not the intended target or sub-type
 			
-			if(!ignoreNBT)
+			if(!ignoreNBT && !tagMatcher.isEmpty())
 			{
 			    NBTTagCompound subjectTags = new NBTTagCompound();
 			    entity.writeToNBTOptional(subjectTags);
-				if(!ItemComparison.CompareNBTTag(targetTags, subjectTags, true)) continue;
+				if(!tagMatcher.matches(subjectTags)) continue;
 			}
 			
 			if(++n >= amount)
@@ -151,6 +152,8 @@ public class TaskMeeting implements ITaskTickable
 		subtypes = json.getBoolean("subtypes");
 		ignoreNBT = json.getBoolean("ignoreNBT");
 		targetTags = json.getCompoundTag("targetNBT");
+		targetMatcher = new EntityClassMatcher(idName, subtypes);
+		tagMatcher = null;
 	}
 
 	@Override
@@ -158,9 +161,7 @@ public class TaskMeeting implements ITaskTickable
 	{
 		NBTTagList jArray = new NBTTagList();
 		
-		completeUsers.forEach((uuid) -> {
-		    if(users == null || users.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
-		});
+		store.forEachComplete(users, (uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
 		
 		nbt.setTag("completeUsers", jArray);
 		
@@ -170,13 +171,13 @@ public class TaskMeeting implements ITaskTickable
 	@Override
 	public void readProgressFromNBT(NBTTagCompound nbt, boolean merge)
 	{
-		if(!merge) completeUsers.clear();
+		if(!merge) store.reset(null);
 		NBTTagList cList = nbt.getTagList("completeUsers", 8);
 		for(int i = 0; i < cList.tagCount(); i++)
 		{
 			try
 			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
+				store.setComplete(UUID.fromString(cList.getStringTagAt(i)));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
@@ -3,15 +3,15 @@ package bq_standard.tasks;
 import betterquesting.api.questing.IQuest;
 import betterquesting.api.questing.tasks.IItemTask;
 import betterquesting.api.utils.BigItemStack;
-import betterquesting.api.utils.ItemComparison;
 import betterquesting.api.utils.JsonHelper;
-import betterquesting.api.utils.NBTConverter;
 import betterquesting.api2.client.gui.misc.IGuiRect;
 import betterquesting.api2.client.gui.panels.IGuiPanel;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
 import betterquesting.api2.utils.Tuple2;
 import bq_standard.client.gui.tasks.PanelTaskRetrieval;
+import bq_standard.ItemMatcher;
+import bq_standard.StackKey;
 import bq_standard.core.BQ_Standard;
 import bq_standard.tasks.factory.FactoryTaskRetrieval;
 import cpw.mods.fml.relauncher.Side;
@@ -20,9 +20,7 @@ import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.entity.player.InventoryPlayer;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.*;
-import net.minecraft.nbt.NBTBase.NBTPrimitive;
 import net.minecraft.util.ResourceLocation;
-import org.apache.logging.log4j.Level;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -30,15 +28,18 @@ import java.util.*;
 
 public class TaskRetrieval implements ITaskInventory, IItemTask
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
+	private final IntArrayProgressStore store = new IntArrayProgressStore();
 	public final List<BigItemStack> requiredItems = new ArrayList<>();
-	private final TreeMap<UUID, int[]> userProgress = new TreeMap<>();
 	public boolean partialMatch = true;
 	public boolean ignoreNBT = true;
 	public boolean consume = false;
 	public boolean groupDetect = false;
 	public boolean autoConsume = false;
 	
+	private ItemMatcher matcher = null;
+	private final HashMap<StackKey, int[]> matchCache = new HashMap<>();
+	private final HashMap<UUID, Integer> countedStamps = new HashMap<>();
+	
 	@Override
 	public String getUnlocalisedName()
 	{
@@ -54,21 +55,26 @@ public class TaskRetrieval implements ITaskInventory, IItemTask
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 	
 	@Override
-	public void onInventoryChange(@Nonnull DBEntry<IQuest> quest, @Nonnull ParticipantInfo pInfo)
+	public void onInventoryChange(@Nonnull DBEntry<IQuest> quest, @Nonnull ParticipantInfo pInfo, @Nullable BitSet changedSlots)
     {
-        if(!consume || autoConsume)
+        if(consume)
+        {
+            if(autoConsume) detect(pInfo, quest);
+        } else if(!isComplete(pInfo.UUID))
         {
-            detect(pInfo, quest);
+            PartyInventory party = PartyInventory.get(pInfo, false);
+            Integer counted = countedStamps.get(pInfo.UUID);
+            if(counted == null || counted != party.stamp) updateProgress(pInfo, quest, party);
         }
     }
     
@@ -76,7 +82,11 @@ public class TaskRetrieval implements ITaskInventory, IItemTask
 	public void detect(ParticipantInfo pInfo, DBEntry<IQuest> quest)
 	{
 		if(isComplete(pInfo.UUID)) return;
-		
+		updateProgress(pInfo, quest, consume ? null : PartyInventory.get(pInfo, true));
+	}
+	
+	private void updateProgress(ParticipantInfo pInfo, DBEntry<IQuest> quest, @Nullable PartyInventory party)
+	{
         final List<Tuple2<UUID, int[]>> progress = getBulkProgress(consume ? Collections.singletonList(pInfo.UUID) : pInfo.ALL_UUIDS);
 		boolean updated = false;
 		
@@ -84,7 +94,17 @@ public class TaskRetrieval implements ITaskInventory, IItemTask
         {
             if(groupDetect) // Reset all detect progress
             {
-                progress.forEach((value) -> Arrays.fill(value.getSecond(), 0));
+                for(Tuple2<UUID, int[]> value : progress)
+                {
+                    int[] counts = value.getSecond();
+                    
+                    for(int i = 0; i < counts.length; i++)
+                    {
+                        if(counts[i] == 0) continue;
+                        counts[i] = 0;
+                        updated = true;
+                    }
+                }
             } else
             {
                 for(int i = 0; i < requiredItems.size(); i++)
@@ -103,53 +123,54 @@ public class TaskRetrieval implements ITaskInventory, IItemTask
             }
         }
 		
-		final List<InventoryPlayer> invoList;
 		if(consume)
         {
-            invoList = Collections.singletonList(pInfo.PLAYER.inventory);
-        } else
-        {
-            invoList = new ArrayList<>();
-            pInfo.ACTIVE_PLAYERS.forEach((p) -> invoList.add(p.inventory));
-        }
-		
-		for(InventoryPlayer invo : invoList)
-        {
+            // Consumption changes the inventory as it goes so it always works on the live stacks
+            InventoryPlayer invo = pInfo.PLAYER.inventory;
+            Tuple2<UUID, int[]> value = progress.get(0);
+            
             for(int i = 0; i < invo.getSizeInventory(); i++)
             {
                 ItemStack stack = invo.getStackInSlot(i);
                 if(stack == null || stack.stackSize <= 0) continue;
+                
+                for(int j : getMatcher().getMatches(stack))
+                {
+                    BigItemStack rStack = requiredItems.get(j);
+                    if(value.getSecond()[j] >= rStack.stackSize) continue;
+                    
+                    ItemStack removed = invo.decrStackSize(i, rStack.stackSize - value.getSecond()[j]);
+                    value.getSecond()[j] += removed.stackSize;
+                    updated = true;
+                    
+                    stack = invo.getStackInSlot(i);
+                    if(stack == null || stack.stackSize <= 0) break;
+                }
+            }
+        } else
+        {
+            countedStamps.put(pInfo.UUID, party.stamp);
+            
+            for(Map.Entry<StackKey, Integer> entry : party.getItems().entrySet())
+            {
+                int[] matches = getMatches(entry.getKey());
+                if(matches.length <= 0) continue;
                 // Allows the stack detection to split across multiple requirements. Counts may vary per person
                 int[] remCounts = new int[progress.size()];
-                Arrays.fill(remCounts, stack.stackSize);
+                Arrays.fill(remCounts, entry.getValue());
                 
-                for(int j = 0; j < requiredItems.size(); j++)
+                for(int j : matches)
                 {
                     BigItemStack rStack = requiredItems.get(j);
-        
-                    if(!ItemComparison.StackMatch(rStack.getBaseStack(), stack, !ignoreNBT, partialMatch) && !ItemComparison.OreDictionaryMatch(rStack.getOreIngredient(), rStack.GetTagCompound(), stack, !ignoreNBT, partialMatch))
-                    {
-                        continue;
-                    }
                     
                     for(int n = 0; n < progress.size(); n++)
                     {
                         Tuple2<UUID, int[]> value = progress.get(n);
                         if(value.getSecond()[j] >= rStack.stackSize) continue;
                         
-                        int remaining = rStack.stackSize - value.getSecond()[j];
-                        
-                        if(consume)
-                        {
-                            ItemStack removed = invo.decrStackSize(i, remaining);
-                            value.getSecond()[j] += removed.stackSize;
-                        } else
-                        {
-                            int temp = Math.min(remaining, remCounts[n]);
-                            remCounts[n] -= temp;
-                            value.getSecond()[j] += temp;
-                        }
-        
+                        int temp = Math.min(rStack.stackSize - value.getSecond()[j], remCounts[n]);
+                        remCounts[n] -= temp;
+                        value.getSecond()[j] += temp;
                         updated = true;
                     }
                 }
@@ -160,6 +181,33 @@ public class TaskRetrieval implements ITaskInventory, IItemTask
 		checkAndComplete(pInfo, quest, updated);
 	}
 	
+	/**
+	 * Indices of the required items the given stack can count towards
+	 */
+	private int[] getMatches(StackKey key)
+	{
+		ItemMatcher compiled = getMatcher();
+		int[] matches = matchCache.get(key);
+		if(matches != null) return matches;
+		
+		matches = compiled.getMatches(key);
+		
+		if(matchCache.size() >= 1024) matchCache.clear(); // Only needs to hold what players are carrying right now
+		matchCache.put(key, matches);
+		return matches;
+	}
+	
+	private ItemMatcher getMatcher()
+	{
+		if(matcher == null || !matcher.isCompiledFrom(requiredItems, ignoreNBT, partialMatch))
+		{
+			matcher = ItemMatcher.compile(requiredItems, ignoreNBT, partialMatch);
+			matchCache.clear();
+		}
+		
+		return matcher;
+	}
+	
 	private void checkAndComplete(ParticipantInfo pInfo, DBEntry<IQuest> quest, boolean resync)
     {
         final List<Tuple2<UUID, int[]>> progress = getBulkProgress(consume ? Collections.singletonList(pInfo.UUID) : pInfo.ALL_UUIDS);
@@ -226,111 +274,44 @@ public class TaskRetrieval implements ITaskInventory, IItemTask
 		groupDetect = nbt.getBoolean("groupDetect");
 		autoConsume = nbt.getBoolean("autoConsume");
 		
+		matchCache.clear();
+		countedStamps.clear();
 		requiredItems.clear();
 		NBTTagList iList = nbt.getTagList("requiredItems", 10);
 		for(int i = 0; i < iList.tagCount(); i++)
 		{
 			requiredItems.add(JsonHelper.JsonToItemStack(iList.getCompoundTagAt(i)));
 		}
+		
+		matcher = ItemMatcher.compile(requiredItems, ignoreNBT, partialMatch);
 	}
 	
 	@Override
 	public void readProgressFromNBT(NBTTagCompound nbt, boolean merge)
 	{
-		if(!merge)
-        {
-            completeUsers.clear();
-            userProgress.clear();
-        }
+		countedStamps.clear();
 		
-		NBTTagList cList = nbt.getTagList("completeUsers", 8);
-		for(int i = 0; i < cList.tagCount(); i++)
-		{
-			try
-			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
-			} catch(Exception e)
-			{
-				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
-			}
-		}
-		
-		NBTTagList pList = nbt.getTagList("userProgress", 10);
-		for(int n = 0; n < pList.tagCount(); n++)
-		{
-			try
-			{
-                NBTTagCompound pTag = pList.getCompoundTagAt(n);
-                UUID uuid = UUID.fromString(pTag.getString("uuid"));
-                
-                int[] data = new int[requiredItems.size()];
-			    List<NBTBase> dNbt = NBTConverter.getTagList(pTag.getTagList("data", 3));
-                for(int i = 0; i < data.length && i < dNbt.size(); i++) // TODO: Change this to an int array. This is dumb...
-                {
-                    data[i] = ((NBTPrimitive)dNbt.get(i)).func_150287_d();
-                }
-                
-			    userProgress.put(uuid, data);
-			} catch(Exception e)
-			{
-				BQ_Standard.logger.log(Level.ERROR, "Unable to load user progress for task", e);
-			}
-		}
+		if(!merge) store.reset(null);
+		store.readFromNBT(nbt, requiredItems.size());
 	}
 	
 	@Override
 	public NBTTagCompound writeProgressToNBT(NBTTagCompound nbt, @Nullable List<UUID> users)
 	{
-		NBTTagList jArray = new NBTTagList();
-		NBTTagList progArray = new NBTTagList();
-		
-		if(users != null)
-        {
-            users.forEach((uuid) -> {
-                if(completeUsers.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
-                
-                int[] data = userProgress.get(uuid);
-                if(data != null)
-                {
-                    NBTTagCompound pJson = new NBTTagCompound();
-                    pJson.setString("uuid", uuid.toString());
-                    NBTTagList pArray = new NBTTagList(); // TODO: Why the heck isn't this just an int array?!
-                    for(int i : data) pArray.appendTag(new NBTTagInt(i));
-                    pJson.setTag("data", pArray);
-                    progArray.appendTag(pJson);
-                }
-            });
-        } else
-        {
-            completeUsers.forEach((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
-            
-            userProgress.forEach((uuid, data) -> {
-                NBTTagCompound pJson = new NBTTagCompound();
-			    pJson.setString("uuid", uuid.toString());
-                NBTTagList pArray = new NBTTagList(); // TODO: Why the heck isn't this just an int array?!
-                for(int i : data) pArray.appendTag(new NBTTagInt(i));
-                pJson.setTag("data", pArray);
-                progArray.appendTag(pJson);
-            });
-        }
-		
-		nbt.setTag("completeUsers", jArray);
-		nbt.setTag("userProgress", progArray);
-		
-		return nbt;
+		return store.writeToNBT(nbt, users);
 	}
 	
 	@Override
 	public void resetUser(@Nullable UUID uuid)
 	{
+	    countedStamps.clear();
+	    
 	    if(uuid == null)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
-            userProgress.remove(uuid);
+            store.reset(uuid);
         }
 	}
 
@@ -350,16 +331,9 @@ public class TaskRetrieval implements ITaskInventory, IItemTask
 		
 		int[] progress = getUsersProgress(owner);
 		
-		for(int j = 0; j < requiredItems.size(); j++)
+		for(int j : getMatcher().getMatches(stack))
 		{
-			BigItemStack rStack = requiredItems.get(j);
-			
-			if(progress[j] >= rStack.stackSize) continue;
-			
-			if(ItemComparison.StackMatch(rStack.getBaseStack(), stack, !ignoreNBT, partialMatch) || ItemComparison.OreDictionaryMatch(rStack.getOreIngredient(), rStack.GetTagCompound(), stack, !ignoreNBT, partialMatch))
-			{
-				return true;
-			}
+			if(progress[j] < requiredItems.get(j).stackSize) return true;
 		}
 		
 		return false;
@@ -375,26 +349,21 @@ public class TaskRetrieval implements ITaskInventory, IItemTask
 		int[] progress = getUsersProgress(owner);
 		boolean updated = false;
 		
-		for(int j = 0; j < requiredItems.size(); j++)
+		for(int j : getMatcher().getMatches(stack))
 		{
 			BigItemStack rStack = requiredItems.get(j);
 			
 			if(progress[j] >= rStack.stackSize) continue;
 
-			int remaining = rStack.stackSize - progress[j];
-			
-			if(ItemComparison.StackMatch(rStack.getBaseStack(), stack, !ignoreNBT, partialMatch) || ItemComparison.OreDictionaryMatch(rStack.getOreIngredient(), rStack.GetTagCompound(), stack, !ignoreNBT, partialMatch))
-			{
-				int removed = Math.min(stack.stackSize, remaining);
-				stack.stackSize -= removed;
-				progress[j] += removed;
-				updated = true;
-				if(stack.stackSize <= 0)
-                {
-                    stack = null;
-                    break;
-                }
-			}
+			int removed = Math.min(stack.stackSize, rStack.stackSize - progress[j]);
+			stack.stackSize -= removed;
+			progress[j] += removed;
+			updated = true;
+			if(stack.stackSize <= 0)
+            {
+                stack = null;
+                break;
+            }
 		}
 		
 		if(updated)
@@ -414,12 +383,12 @@ public class TaskRetrieval implements ITaskInventory, IItemTask
  
 	private void setUserProgress(UUID uuid, int[] progress)
 	{
-		userProgress.put(uuid, progress);
+		store.set(uuid, progress);
 	}
 	
 	public int[] getUsersProgress(UUID uuid)
 	{
-		int[] progress = userProgress.get(uuid);
+		int[] progress = store.get(uuid);
 		return progress == null || progress.length != requiredItems.size()? new int[requiredItems.size()] : progress;
 	}
 	
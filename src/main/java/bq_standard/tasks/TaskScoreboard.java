@@ -5,10 +5,10 @@ import betterquesting.api2.client.gui.misc.IGuiRect;
 import betterquesting.api2.client.gui.panels.IGuiPanel;
 import betterquesting.api2.storage.DBEntry;
 import betterquesting.api2.utils.ParticipantInfo;
-import bq_standard.ScoreboardBQ;
 import bq_standard.client.gui.editors.tasks.GuiEditTaskScoreboard;
 import bq_standard.client.gui.tasks.PanelTaskScoreboard;
 import bq_standard.core.BQ_Standard;
+import bq_standard.handlers.ScoreSnapshot;
 import bq_standard.tasks.factory.FactoryTaskScoreboard;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
@@ -29,7 +29,7 @@ import java.util.*;
 
 public class TaskScoreboard implements ITaskTickable
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
+	private final ProgressStore store = new ProgressStore();
 	public String scoreName = "Score";
 	public String scoreDisp = "Score";
 	public String type = "dummy";
@@ -53,13 +53,13 @@ public class TaskScoreboard implements ITaskTickable
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 
 	@Override
@@ -67,42 +67,30 @@ public class TaskScoreboard implements ITaskTickable
 	{
 	    if(uuid == null)
         {
-		    completeUsers.clear();
+		    store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
+            store.reset(uuid);
         }
 	}
 	
 	@Override
 	public void tickTask(@Nonnull ParticipantInfo pInfo, DBEntry<IQuest> quest)
 	{
-		if(pInfo.PLAYER.ticksExisted%20 == 0) detect(pInfo, quest); // Auto-detect once per second
+		detect(pInfo, quest);
+	}
+	
+	@Override
+	public int getTickInterval()
+	{
+		return 20; // Auto-detect once per second
 	}
 	
 	@Override
 	public void detect(@Nonnull ParticipantInfo pInfo, DBEntry<IQuest> quest)
 	{
-		Scoreboard board = pInfo.PLAYER.getWorldScoreboard();
-		ScoreObjective scoreObj = board.getObjective(scoreName);
-		
-		if(scoreObj == null)
-		{
-			try
-			{
-		        IScoreObjectiveCriteria criteria = (IScoreObjectiveCriteria)IScoreObjectiveCriteria.field_96643_a.get(type);
-		        criteria = criteria != null? criteria : new ScoreDummyCriteria(scoreName);
-				scoreObj = board.addScoreObjective(scoreName, criteria);
-				scoreObj.setDisplayName(scoreDisp);
-			} catch(Exception e)
-			{
-				BQ_Standard.logger.log(Level.ERROR, "Unable to create score '" + scoreName + "' for task!", e);
-				return;
-			}
-		}
-		
-		int points = board.func_96529_a(pInfo.PLAYER.getCommandSenderName(), scoreObj).getScorePoints();
-		ScoreboardBQ.INSTANCE.setScore(pInfo.UUID, scoreName, points);
+		Integer points = ScoreSnapshot.INSTANCE.getScore(pInfo, this);
+		if(points == null) return;
 		
 		if(operation.checkValues(points, target))
 		{
@@ -111,6 +99,29 @@ public class TaskScoreboard implements ITaskTickable
 		}
 	}
 	
+	/**
+	 * Finds this task's objective on the given board, creating it if it doesn't exist yet
+	 */
+	@Nullable
+	public ScoreObjective getObjective(@Nonnull Scoreboard board)
+	{
+		ScoreObjective scoreObj = board.getObjective(scoreName);
+		if(scoreObj != null) return scoreObj;
+		
+		try
+		{
+	        IScoreObjectiveCriteria criteria = (IScoreObjectiveCriteria)IScoreObjectiveCriteria.field_96643_a.get(type);
+	        criteria = criteria != null? criteria : new ScoreDummyCriteria(scoreName);
+			scoreObj = board.addScoreObjective(scoreName, criteria);
+			scoreObj.setDisplayName(scoreDisp);
+			return scoreObj;
+		} catch(Exception e)
+		{
+			BQ_Standard.logger.log(Level.ERROR, "Unable to create score '" + scoreName + "' for task!", e);
+			return null;
+		}
+	}
+	
 	@Override
 	public NBTTagCompound writeToNBT(NBTTagCompound nbt)
 	{
@@ -149,9 +160,7 @@ public class TaskScoreboard implements ITaskTickable
 	{
 		NBTTagList jArray = new NBTTagList();
 		
-		completeUsers.forEach((uuid) -> {
-		    if(users == null || users.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
-		});
+		store.forEachComplete(users, (uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
 		
 		nbt.setTag("completeUsers", jArray);
 		
@@ -161,13 +170,13 @@ public class TaskScoreboard implements ITaskTickable
 	@Override
 	public void readProgressFromNBT(NBTTagCompound nbt, boolean merge)
 	{
-		if(!merge) completeUsers.clear();
+		if(!merge) store.reset(null);
 		NBTTagList cList = nbt.getTagList("completeUsers", 8);
 		for(int i = 0; i < cList.tagCount(); i++)
 		{
 			try
 			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
+				store.setComplete(UUID.fromString(cList.getStringTagAt(i)));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
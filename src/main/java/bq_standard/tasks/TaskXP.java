@@ -22,12 +22,15 @@ import java.util.*;
 
 public class TaskXP implements ITaskTickable
 {
-	private final Set<UUID> completeUsers = new TreeSet<>();
-	private final TreeMap<UUID, Long> userProgress = new TreeMap<>();
+	private final LongProgressStore store = new LongProgressStore();
 	public boolean levels = true;
 	public int amount = 30;
 	public boolean consume = true;
 	
+	private long cachedXP = -1;
+	private int cachedAmount = 0;
+	private boolean cachedLevels = false;
+	
 	@Override
 	public ResourceLocation getFactoryID()
 	{
@@ -37,33 +40,59 @@ public class TaskXP implements ITaskTickable
 	@Override
 	public boolean isComplete(UUID uuid)
 	{
-		return completeUsers.contains(uuid);
+		return store.isComplete(uuid);
 	}
 	
 	@Override
 	public void setComplete(UUID uuid)
 	{
-		completeUsers.add(uuid);
+		store.setComplete(uuid);
 	}
 	
 	@Override
 	public void tickTask(@Nonnull ParticipantInfo pInfo, DBEntry<IQuest> quest)
 	{
-	    if(consume || pInfo.PLAYER.ticksExisted%60 != 0) return; // Every 3 seconds
+	    onXPChange(pInfo, quest);
+	}
+	
+	/**
+	 * Called by the XPTracker whenever the player's experience changes
+	 */
+	public void onXPChange(@Nonnull ParticipantInfo pInfo, DBEntry<IQuest> quest)
+	{
+	    if(consume || isComplete(pInfo.UUID)) return;
         
         long curProg = getUsersProgress(pInfo.UUID);
         long nxtProg = XPHelper.getPlayerXP(pInfo.PLAYER);
         
         if(curProg != nxtProg)
         {
-            setUserProgress(pInfo.UUID, XPHelper.getPlayerXP(pInfo.PLAYER));
+            setUserProgress(pInfo.UUID, nxtProg);
             pInfo.markDirty(Collections.singletonList(quest.getID()));
         }
         
-        long rawXP = levels? XPHelper.getLevelXP(amount) : amount;
-        long totalXP = getUsersProgress(pInfo.UUID);
-        
-        if(totalXP >= rawXP) setComplete(pInfo.UUID);
+        if(nxtProg >= getRequiredXP()) setComplete(pInfo.UUID);
+	}
+	
+	@Override
+	public int getTickInterval()
+	{
+		return consume ? 0 : 200; // Only a safety net for changes the XPTracker can't see. Consuming only happens on submit
+	}
+	
+	/**
+	 * The raw XP needed to complete this task. Only recalculated when the amount or unit changes
+	 */
+	public long getRequiredXP()
+	{
+		if(cachedXP < 0 || cachedAmount != amount || cachedLevels != levels)
+		{
+			cachedAmount = amount;
+			cachedLevels = levels;
+			cachedXP = levels ? XPHelper.getLevelXP(amount) : amount;
+		}
+		
+		return cachedXP;
 	}
 	
 	@Override
@@ -72,7 +101,7 @@ public class TaskXP implements ITaskTickable
 		if(isComplete(pInfo.UUID)) return;
 		
 		long progress = getUsersProgress(pInfo.UUID);
-		long rawXP = levels? XPHelper.getLevelXP(amount) : amount;
+		long rawXP = getRequiredXP();
 		long plrXP = XPHelper.getPlayerXP(pInfo.PLAYER);
 		long remaining = rawXP - progress;
 		long cost = Math.min(remaining, plrXP);
@@ -133,8 +162,7 @@ public class TaskXP implements ITaskTickable
 	{
 		if(!merge)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         }
 		
 		NBTTagList cList = nbt.getTagList("completeUsers", 8);
@@ -142,7 +170,7 @@ public class TaskXP implements ITaskTickable
 		{
 			try
 			{
-				completeUsers.add(UUID.fromString(cList.getStringTagAt(i)));
+				store.setComplete(UUID.fromString(cList.getStringTagAt(i)));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load UUID for task", e);
@@ -156,7 +184,7 @@ public class TaskXP implements ITaskTickable
 			{
                 NBTTagCompound pTag = pList.getCompoundTagAt(n);
                 UUID uuid = UUID.fromString(pTag.getString("uuid"));
-                userProgress.put(uuid, pTag.getLong("value"));
+                store.set(uuid, pTag.getLong("value"));
 			} catch(Exception e)
 			{
 				BQ_Standard.logger.log(Level.ERROR, "Unable to load user progress for task", e);
@@ -173,11 +201,11 @@ public class TaskXP implements ITaskTickable
 		if(users != null)
         {
             users.forEach((uuid) -> {
-                if(completeUsers.contains(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
+                if(store.isComplete(uuid)) jArray.appendTag(new NBTTagString(uuid.toString()));
                 
-                Long data = userProgress.get(uuid);
-                if(data != null)
+                if(store.hasProgress(uuid))
                 {
+                    long data = store.get(uuid);
                     NBTTagCompound pJson = new NBTTagCompound();
                     pJson.setString("uuid", uuid.toString());
                     pJson.setLong("value", data);
@@ -186,9 +214,9 @@ public class TaskXP implements ITaskTickable
             });
         } else
         {
-            completeUsers.forEach((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
+            store.forEachComplete((uuid) -> jArray.appendTag(new NBTTagString(uuid.toString())));
             
-            userProgress.forEach((uuid, data) -> {
+            store.forEach((uuid, data) -> {
                 NBTTagCompound pJson = new NBTTagCompound();
 			    pJson.setString("uuid", uuid.toString());
                 pJson.setLong("value", data);
@@ -207,12 +235,10 @@ public class TaskXP implements ITaskTickable
 	{
 	    if(uuid == null)
         {
-            completeUsers.clear();
-            userProgress.clear();
+            store.reset(null);
         } else
         {
-            completeUsers.remove(uuid);
-            userProgress.remove(uuid);
+            store.reset(uuid);
         }
 	}
 	
@@ -230,12 +256,11 @@ public class TaskXP implements ITaskTickable
 	
 	private void setUserProgress(UUID uuid, long progress)
 	{
-		userProgress.put(uuid, progress);
+		store.set(uuid, progress);
 	}
 	
 	public long getUsersProgress(UUID uuid)
 	{
-        Long n = userProgress.get(uuid);
-        return n == null? 0 : n;
+        return store.get(uuid);
 	}
 }
@@ -0,0 +1,139 @@
+package bq_standard;
+
+import betterquesting.api.utils.ItemComparison;
+import net.minecraft.nbt.*;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks NBTMatcher gives the same answer as ItemComparison.CompareNBTTag in partial mode for every case it replaces
+ */
+public class NBTMatcherTest
+{
+    @Test
+    public void extraAndMissingKeys()
+    {
+        NBTTagCompound target = compound("a", new NBTTagInt(1));
+
+        assertMatch(target, compound("a", new NBTTagInt(1), "b", new NBTTagString("extra")), true);
+        assertMatch(target, compound("b", new NBTTagInt(1)), false);
+        assertMatch(target, new NBTTagCompound(), false);
+        assertMatch(target, null, false);
+    }
+
+    @Test
+    public void duplicateListEntries()
+    {
+        NBTTagCompound target = compound("l", list(new NBTTagString("A"), new NBTTagString("A")));
+
+        assertMatch(target, compound("l", list(new NBTTagString("A"), new NBTTagString("B"))), false);
+        assertMatch(target, compound("l", list(new NBTTagString("B"), new NBTTagString("A"), new NBTTagString("A"))), true);
+        assertMatch(target, compound("l", list(new NBTTagString("A"))), false);
+    }
+
+    @Test
+    public void duplicateCompoundListEntries()
+    {
+        NBTTagCompound ench = compound("id", new NBTTagShort((short)16));
+        NBTTagCompound target = compound("ench", list(ench, (NBTTagCompound)ench.copy()));
+
+        assertMatch(target, compound("ench", list(compound("id", new NBTTagShort((short)16), "lvl", new NBTTagShort((short)1)), compound("id", new NBTTagShort((short)20)))), false);
+        assertMatch(target, compound("ench", list(compound("id", new NBTTagShort((short)16), "lvl", new NBTTagShort((short)1)), compound("id", new NBTTagInt(16)))), true);
+    }
+
+    @Test
+    public void nestedEmptyCompounds()
+    {
+        NBTTagCompound target = compound("a", new NBTTagCompound());
+
+        assertAgrees(target, compound("a", new NBTTagCompound()));
+        assertAgrees(target, compound("a", compound("x", new NBTTagInt(1))));
+        assertAgrees(target, compound("a", new NBTTagInt(1)));
+        assertAgrees(target, new NBTTagCompound());
+
+        NBTTagCompound deep = compound("a", compound("b", new NBTTagCompound(), "c", new NBTTagInt(2)));
+
+        assertAgrees(deep, compound("a", compound("b", new NBTTagCompound(), "c", new NBTTagInt(2))));
+        assertAgrees(deep, compound("a", compound("b", compound("x", new NBTTagInt(1)), "c", new NBTTagInt(2))));
+        assertAgrees(deep, compound("a", compound("c", new NBTTagInt(2))));
+        assertAgrees(deep, compound("a", new NBTTagCompound()));
+    }
+
+    @Test
+    public void emptyLists()
+    {
+        NBTTagCompound target = compound("l", new NBTTagList());
+
+        assertAgrees(target, compound("l", new NBTTagList()));
+        assertAgrees(target, compound("l", list(new NBTTagInt(1))));
+        assertAgrees(target, new NBTTagCompound());
+    }
+
+    @Test
+    public void numericTypeMismatches()
+    {
+        NBTTagCompound target = compound("n", new NBTTagByte((byte)1));
+
+        assertMatch(target, compound("n", new NBTTagInt(1)), true);
+        assertMatch(target, compound("n", new NBTTagLong(1L)), true);
+        assertMatch(target, compound("n", new NBTTagDouble(1D)), true);
+        assertMatch(target, compound("n", new NBTTagInt(2)), false);
+        assertMatch(target, compound("n", new NBTTagString("1")), false);
+
+        assertAgrees(compound("n", new NBTTagFloat(1.5F)), compound("n", new NBTTagDouble(1.5D)));
+        assertAgrees(compound("n", new NBTTagFloat(0.1F)), compound("n", new NBTTagDouble(0.1D)));
+        assertAgrees(compound("n", new NBTTagString("1")), compound("n", new NBTTagInt(1)));
+        assertAgrees(compound("n", list(new NBTTagInt(1))), compound("n", list(new NBTTagLong(1L))));
+    }
+
+    @Test
+    public void arrays()
+    {
+        NBTTagCompound target = compound("i", new NBTTagIntArray(new int[]{3, 1}));
+
+        assertMatch(target, compound("i", new NBTTagIntArray(new int[]{1, 2, 3})), true);
+        assertMatch(target, compound("i", new NBTTagIntArray(new int[]{1, 2})), false);
+        assertMatch(compound("i", new NBTTagIntArray(new int[]{1, 1})), compound("i", new NBTTagIntArray(new int[]{1, 2})), false);
+        assertAgrees(target, compound("i", new NBTTagByteArray(new byte[]{3, 1})));
+        assertAgrees(compound("i", new NBTTagIntArray(new int[0])), compound("i", new NBTTagIntArray(new int[]{5})));
+
+        NBTTagCompound bytes = compound("b", new NBTTagByteArray(new byte[]{7, 7}));
+
+        assertMatch(bytes, compound("b", new NBTTagByteArray(new byte[]{7, 8, 7})), true);
+        assertMatch(bytes, compound("b", new NBTTagByteArray(new byte[]{7, 8})), false);
+    }
+
+    @Test
+    public void typeMismatches()
+    {
+        assertAgrees(compound("a", compound("x", new NBTTagInt(1))), compound("a", list(new NBTTagInt(1))));
+        assertAgrees(compound("a", list(new NBTTagInt(1))), compound("a", new NBTTagIntArray(new int[]{1})));
+        assertAgrees(compound("a", new NBTTagString("x")), compound("a", compound("x", new NBTTagInt(1))));
+    }
+
+    private static void assertMatch(NBTTagCompound target, NBTTagCompound sample, boolean expected)
+    {
+        assertEquals("CompareNBTTag " + target + " vs " + sample, expected, ItemComparison.CompareNBTTag(target, sample, true));
+        assertEquals("NBTMatcher " + target + " vs " + sample, expected, NBTMatcher.compile(target).matches(sample));
+    }
+
+    private static void assertAgrees(NBTTagCompound target, NBTTagCompound sample)
+    {
+        assertMatch(target, sample, ItemComparison.CompareNBTTag(target, sample, true));
+    }
+
+    private static NBTTagCompound compound(Object... entries)
+    {
+        NBTTagCompound tag = new NBTTagCompound();
+        for(int i = 0; i < entries.length; i += 2) tag.setTag((String)entries[i], (NBTBase)entries[i + 1]);
+        return tag;
+    }
+
+    private static NBTTagList list(NBTBase... entries)
+    {
+        NBTTagList tag = new NBTTagList();
+        for(NBTBase entry : entries) tag.appendTag(entry);
+        return tag;
+    }
+}
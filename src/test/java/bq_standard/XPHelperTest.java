@@ -0,0 +1,156 @@
+package bq_standard;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Property tests for the closed form XP curve math against the original table and level by level search it replaced,
+ * and against exact BigInteger totals where the old floating point formula stops being exact
+ */
+public class XPHelperTest
+{
+    private static final int MAX_LEVEL = Integer.MAX_VALUE - 1;
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    @Test
+    public void levelXPMatchesOldFormula()
+    {
+        for(int level = -5; level <= 200000; level++)
+        {
+            assertEquals("Level " + level, Legacy.getLevelXP(level), XPHelper.getLevelXP(level));
+        }
+    }
+
+    @Test
+    public void levelXPIsExactAcrossFullRange()
+    {
+        Random rand = new Random(19L);
+
+        for(int i = 0; i < 100000; i++)
+        {
+            int level = i < 1000 ? MAX_LEVEL - i : rand.nextInt(Integer.MAX_VALUE);
+            assertEquals("Level " + level, exactLevelXP(level), XPHelper.getLevelXP(level));
+        }
+    }
+
+    @Test
+    public void xpLevelMatchesOldSearch()
+    {
+        for(long xp = -5L; xp <= 100000L; xp++)
+        {
+            assertEquals("XP " + xp, Legacy.getXPLevel(xp), XPHelper.getXPLevel(xp));
+        }
+
+        for(int level = 0; level <= 20000; level++)
+        {
+            long total = Legacy.getLevelXP(level);
+
+            for(long xp = total - 1L; xp <= total + 1L; xp++)
+            {
+                assertEquals("XP " + xp, Legacy.getXPLevel(xp), XPHelper.getXPLevel(xp));
+            }
+        }
+
+        Random rand = new Random(42L);
+        long limit = Legacy.getLevelXP(3000000);
+
+        for(int i = 0; i < 50; i++) // The old search can take a million steps per call so this stays small
+        {
+            long xp = (long)(rand.nextDouble() * limit);
+            assertEquals("XP " + xp, Legacy.getXPLevel(xp), XPHelper.getXPLevel(xp));
+        }
+    }
+
+    @Test
+    public void xpLevelInvertsLevelXPAcrossFullRange()
+    {
+        Random rand = new Random(7L);
+        long[] edges = {0L, 1L, 271L, 272L, 886L, 887L, Integer.MAX_VALUE, Long.MAX_VALUE - 1L, Long.MAX_VALUE, XPHelper.getLevelXP(MAX_LEVEL)};
+
+        for(long xp : edges) assertInverse(xp);
+        for(int i = 0; i < 100000; i++) assertInverse(rand.nextLong() & Long.MAX_VALUE);
+        for(int i = 0; i < 100000; i++) assertInverse(XPHelper.getLevelXP(rand.nextInt(Integer.MAX_VALUE)) + rand.nextInt(3) - 1L);
+    }
+
+    private static void assertInverse(long xp)
+    {
+        if(xp < 0L) return;
+
+        int level = XPHelper.getXPLevel(xp);
+        assertTrue("Level " + level + " needs more than " + xp, XPHelper.getLevelXP(level) <= xp);
+        assertTrue("Level " + (level + 1) + " is reachable with " + xp, level >= MAX_LEVEL || XPHelper.getLevelXP(level + 1) > xp);
+    }
+
+    private static long exactLevelXP(int level)
+    {
+        if(level <= 0) return 0L;
+
+        BigInteger l = BigInteger.valueOf(level);
+        BigInteger total;
+
+        if(level < 16)
+        {
+            total = l.multiply(BigInteger.valueOf(17));
+        } else if(level < 31)
+        {
+            total = l.multiply(l.multiply(BigInteger.valueOf(3)).subtract(BigInteger.valueOf(59))).shiftRight(1).add(BigInteger.valueOf(360));
+        } else
+        {
+            total = l.multiply(l.multiply(BigInteger.valueOf(7)).subtract(BigInteger.valueOf(303))).shiftRight(1).add(BigInteger.valueOf(2220));
+        }
+
+        return total.compareTo(LONG_MAX) > 0 ? Long.MAX_VALUE : total.longValue();
+    }
+
+    /**
+     * The implementation XPHelper used before the closed form
+     */
+    private static class Legacy
+    {
+        private static final long[] QUICK_XP = new long[2147];
+
+        static
+        {
+            for(int i = 0; i < QUICK_XP.length; i++)
+            {
+                QUICK_XP[i] = getLevelXP(i * 1000000);
+            }
+        }
+
+        private static int getXPLevel(long xp)
+        {
+            if(xp <= 0) return 0;
+
+            int i = 0;
+
+            while(i < QUICK_XP.length && QUICK_XP[i] <= xp) i++;
+
+            if(i > 0) i = (i - 1) * 1000000;
+
+            while(i < Integer.MAX_VALUE && getLevelXP(i) <= xp) i++;
+
+            return i - 1;
+        }
+
+        private static long getLevelXP(int level)
+        {
+            if(level <= 0) return 0;
+
+            if(level < 16)
+            {
+                return level * 17;
+            } else if(level < 31)
+            {
+                return (long)(1.5D * Math.pow(level, 2D) - (29.5D * level) + 360L);
+            } else
+            {
+                return (long)(3.5D * Math.pow(level, 2D) - (151.5D * level) + 2220L);
+            }
+        }
+    }
+}